@@ -2,8 +2,10 @@ package es.santander.ascender.proyectoFinal2;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class ProyectoFinal3Application {
 
 	public static void main(String[] args) {
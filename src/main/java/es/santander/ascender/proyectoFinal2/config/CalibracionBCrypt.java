@@ -0,0 +1,48 @@
+package es.santander.ascender.proyectoFinal2.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.time.Duration;
+
+/**
+ * Elige al arrancar la fuerza de BCrypt cuyo tiempo de cifrado se acerca más al objetivo en la máquina
+ * actual. Se mide un cifrado con la fuerza mínima; cada punto más de fuerza duplica el tiempo. El
+ * resultado se limita a [MINIMA, MAXIMA]: nunca por debajo del valor por defecto de Spring Security y
+ * nunca tan alto que un login tarde segundos.
+ */
+public final class CalibracionBCrypt {
+
+    private static final Logger log = LoggerFactory.getLogger(CalibracionBCrypt.class);
+
+    public static final int MINIMA = 10;
+    public static final int MAXIMA = 14;
+
+    private static final int MEDICIONES = 3;
+
+    private CalibracionBCrypt() {
+    }
+
+    public static int calibrar(Duration objetivo) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(MINIMA);
+        // El primer cifrado incluye la carga de clases y el JIT: no cuenta
+        encoder.encode("calibracion");
+        long mejor = Long.MAX_VALUE;
+        for (int i = 0; i < MEDICIONES; i++) {
+            long inicio = System.nanoTime();
+            encoder.encode("calibracion");
+            mejor = Math.min(mejor, System.nanoTime() - inicio);
+        }
+        int fuerza = fuerza(objetivo, Duration.ofNanos(mejor));
+        log.info("BCrypt: {} ms con fuerza {}; se usa fuerza {} para un objetivo de {} ms",
+                mejor / 1_000_000, MINIMA, fuerza, objetivo.toMillis());
+        return fuerza;
+    }
+
+    // Fuerza cuyo tiempo estimado (medido * 2^(fuerza - MINIMA)) queda más cerca del objetivo
+    public static int fuerza(Duration objetivo, Duration medidoConMinima) {
+        double pasos = Math.log((double) objetivo.toNanos() / Math.max(1, medidoConMinima.toNanos())) / Math.log(2);
+        return (int) Math.max(MINIMA, Math.min(MAXIMA, MINIMA + Math.round(pasos)));
+    }
+}
@@ -0,0 +1,282 @@
+package es.santander.ascender.proyectoFinal2.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limita las peticiones de autenticación (/api/auth/**) y de escritura (POST, PUT y DELETE en el resto
+ * de /api) por IP de origen y por username. Se ejecuta antes de cualquier autenticación: una petición
+ * que supera el límite recibe 429 con Retry-After sin que se haya ejecutado BCrypt ni consultado la
+ * base de datos.
+ *
+ * En la autenticación el username es el que se intenta usar (el del login o el de HTTP Basic), para
+ * frenar los ataques de diccionario repartidos entre varias IP. En las escrituras sólo cuenta el de
+ * un token de acceso válido: con HTTP Basic la contraseña aún no se ha comprobado y cualquiera podría
+ * agotar el cubo de otro usuario enviando su nombre, así que esas peticiones sólo se limitan por IP.
+ *
+ * Cada clave es un cubo de tokens de capacidad "rafaga" que recupera un token cada "periodo",
+ * implementado con GCRA: el estado del cubo es un único instante (cuándo volvería a estar lleno)
+ * en un AtomicLong, que se actualiza con compareAndSet sin cerrojos. Un cubo cuyo instante ya ha
+ * pasado está lleno y equivale a no tenerlo, así que la limpieza periódica lo descarta.
+ *
+ * La IP es la del socket (request.getRemoteAddr()): detrás de un proxy hay que activar
+ * server.forward-headers-strategy para que sea la del cliente.
+ */
+@Component
+public class FiltroLimitePeticiones extends OncePerRequestFilter {
+
+    private static final String PREFIJO_BASIC = "Basic ";
+    private static final String PREFIJO_BEARER = TokensAcceso.TIPO + " ";
+
+    // El username del login sólo se lee de cuerpos pequeños
+    private static final int MAXIMO_CUERPO_LOGIN = 8 * 1024;
+
+    private enum Grupo {
+        AUTENTICACION, ESCRITURA
+    }
+
+    private record Limite(long periodo, long tolerancia) {
+
+        static Limite de(int rafaga, Duration periodo) {
+            return new Limite(periodo.toNanos(), periodo.toNanos() * Math.max(1, rafaga));
+        }
+    }
+
+    // Instante (System.nanoTime) en que cada cubo volvería a estar lleno
+    private final Map<String, AtomicLong> cubos = new ConcurrentHashMap<>();
+
+    @Autowired
+    private TokensAcceso tokensAcceso;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${seguridad.limite.habilitado:true}")
+    private boolean habilitado;
+
+    @Value("${seguridad.limite.autenticacion.rafaga:10}")
+    private int rafagaAutenticacion;
+
+    @Value("${seguridad.limite.autenticacion.periodo:PT6S}")
+    private Duration periodoAutenticacion;
+
+    @Value("${seguridad.limite.escritura.rafaga:50}")
+    private int rafagaEscritura;
+
+    @Value("${seguridad.limite.escritura.periodo:PT0.05S}")
+    private Duration periodoEscritura;
+
+    private Limite limiteAutenticacion;
+    private Limite limiteEscritura;
+
+    @PostConstruct
+    void iniciar() {
+        limiteAutenticacion = Limite.de(rafagaAutenticacion, periodoAutenticacion);
+        limiteEscritura = Limite.de(rafagaEscritura, periodoEscritura);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !habilitado || grupo(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Grupo grupo = grupo(request);
+        Limite limite = grupo == Grupo.AUTENTICACION ? limiteAutenticacion : limiteEscritura;
+
+        HttpServletRequest peticion = request;
+        String username = usernameDeCabecera(request, grupo);
+        if (username == null && grupo == Grupo.AUTENTICACION && request.getRequestURI().endsWith("/login")) {
+            CuerpoLeido cuerpo = CuerpoLeido.leer(request);
+            if (cuerpo != null) {
+                peticion = cuerpo;
+                username = usernameDeLogin(cuerpo.bytes);
+            }
+        }
+
+        long ahora = System.nanoTime();
+        long espera = consumir(grupo + "|ip|" + request.getRemoteAddr(), limite, ahora);
+        if (espera == 0 && username != null) {
+            espera = consumir(grupo + "|usuario|" + username, limite, ahora);
+        }
+        if (espera > 0) {
+            response.setStatus(429);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (espera + 999_999_999) / 1_000_000_000)));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write("{\"mensaje\":\"Demasiadas peticiones. Inténtelo de nuevo más tarde\"}");
+            return;
+        }
+        chain.doFilter(peticion, response);
+    }
+
+    /**
+     * Consume un token del cubo. Devuelve 0 si había token o, si no, los nanosegundos que faltan
+     * para que lo haya.
+     */
+    private long consumir(String clave, Limite limite, long ahora) {
+        AtomicLong cubo = cubos.computeIfAbsent(clave, k -> new AtomicLong(ahora));
+        while (true) {
+            long lleno = cubo.get();
+            long nuevo = Math.max(lleno, ahora) + limite.periodo();
+            long exceso = nuevo - ahora - limite.tolerancia();
+            if (exceso > 0) {
+                return exceso;
+            }
+            if (cubo.compareAndSet(lleno, nuevo)) {
+                return 0;
+            }
+        }
+    }
+
+    // Los cubos ya llenos no guardan información: quitarlos no cambia ningún límite
+    @Scheduled(fixedDelayString = "${seguridad.limite.intervalo-limpieza:PT1M}")
+    public void descartarCubosInactivos() {
+        long ahora = System.nanoTime();
+        cubos.values().removeIf(cubo -> cubo.get() - ahora <= 0);
+    }
+
+    private static Grupo grupo(HttpServletRequest request) {
+        String ruta = request.getRequestURI();
+        if (!ruta.startsWith("/api/")) {
+            return null;
+        }
+        if (ruta.startsWith("/api/auth/")) {
+            return HttpMethod.POST.matches(request.getMethod()) ? Grupo.AUTENTICACION : null;
+        }
+        String metodo = request.getMethod();
+        boolean escritura = HttpMethod.POST.matches(metodo) || HttpMethod.PUT.matches(metodo)
+                || HttpMethod.DELETE.matches(metodo);
+        return escritura ? Grupo.ESCRITURA : null;
+    }
+
+    // Username de un token de acceso válido o, sólo en la autenticación, de HTTP Basic (aún sin
+    // comprobar la contraseña)
+    private String usernameDeCabecera(HttpServletRequest request, Grupo grupo) {
+        String cabecera = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (cabecera == null) {
+            return null;
+        }
+        if (grupo == Grupo.AUTENTICACION && cabecera.regionMatches(true, 0, PREFIJO_BASIC, 0, PREFIJO_BASIC.length())) {
+            try {
+                String credenciales = new String(Base64.getDecoder().decode(cabecera.substring(PREFIJO_BASIC.length()).trim()),
+                        StandardCharsets.UTF_8);
+                int separador = credenciales.indexOf(':');
+                return separador > 0 ? credenciales.substring(0, separador) : null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        if (cabecera.regionMatches(true, 0, PREFIJO_BEARER, 0, PREFIJO_BEARER.length())) {
+            return tokensAcceso.verificarAcceso(cabecera.substring(PREFIJO_BEARER.length()).trim())
+                    .map(TokensAcceso.Datos::username)
+                    .orElse(null);
+        }
+        return null;
+    }
+
+    private String usernameDeLogin(byte[] cuerpo) {
+        try {
+            JsonNode username = objectMapper.readTree(cuerpo).get("username");
+            return username != null && username.isTextual() ? username.asText() : null;
+        } catch (IOException e) {
+            // El controlador responderá al JSON mal formado; aquí sólo se limita por IP
+            return null;
+        }
+    }
+
+    /**
+     * Petición cuyo cuerpo ya se ha leído para sacar el username del login: lo devuelve de nuevo
+     * al controlador.
+     */
+    private static final class CuerpoLeido extends HttpServletRequestWrapper {
+
+        private final byte[] bytes;
+
+        private CuerpoLeido(HttpServletRequest request, byte[] bytes) {
+            super(request);
+            this.bytes = bytes;
+        }
+
+        static CuerpoLeido leer(HttpServletRequest request) throws IOException {
+            long longitud = request.getContentLengthLong();
+            if (longitud < 0 || longitud > MAXIMO_CUERPO_LOGIN) {
+                return null;
+            }
+            return new CuerpoLeido(request, request.getInputStream().readNBytes((int) longitud));
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream entrada = new ByteArrayInputStream(bytes);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return entrada.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // El cuerpo ya está en memoria: todo está disponible desde el principio
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return entrada.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return entrada.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package es.santander.ascender.proyectoFinal2.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Autentica las peticiones con cabecera "Authorization: Bearer &lt;token de acceso&gt;". Si el token
+ * es válido se establece la autenticación sin consultar la base de datos. Si no lo es se responde 401
+ * en lugar de seguir como anónimo. Las peticiones sin token siguen pasando por HTTP Basic.
+ * No se aplica a /api/auth/**: son públicas y el cliente debe poder renovar los tokens aunque
+ * siga enviando el de acceso ya caducado.
+ *
+ * Se añade a la cadena de Spring Security en SecurityConfig y no se registra como filtro del servlet.
+ */
+@Component
+public class FiltroTokenAcceso extends OncePerRequestFilter {
+
+    private static final String PREFIJO = TokensAcceso.TIPO + " ";
+
+    @Autowired
+    private TokensAcceso tokensAcceso;
+
+    private final WebAuthenticationDetailsSource detalles = new WebAuthenticationDetailsSource();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith("/api/auth/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String cabecera = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (cabecera == null || !cabecera.regionMatches(true, 0, PREFIJO, 0, PREFIJO.length())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        Optional<TokensAcceso.Datos> datos = tokensAcceso.verificarAcceso(cabecera.substring(PREFIJO.length()).trim());
+        if (datos.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+            response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write("{\"mensaje\":\"Token no válido o caducado\"}");
+            return;
+        }
+
+        UsuarioAutenticado principal = new UsuarioAutenticado(datos.get().id(), datos.get().username(), "",
+                datos.get().rol());
+        UsernamePasswordAuthenticationToken autenticacion = UsernamePasswordAuthenticationToken.authenticated(
+                principal, null, principal.getAuthorities());
+        autenticacion.setDetails(detalles.buildDetails(request));
+        SecurityContext contexto = SecurityContextHolder.createEmptyContext();
+        contexto.setAuthentication(autenticacion);
+        SecurityContextHolder.setContext(contexto);
+        chain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,133 @@
+package es.santander.ascender.proyectoFinal2.config;
+
+import es.santander.ascender.proyectoFinal2.event.UsuarioModificadoEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Autenticación usuario/contraseña con caché de las credenciales ya verificadas. Comprobar una
+ * contraseña con BCrypt cuesta decenas de milisegundos de CPU y con HTTP Basic se hace en cada
+ * petición. Tras una verificación correcta se guarda, por username, un HMAC de la contraseña
+ * presentada. Mientras no caduque (seguridad.cache-credenciales.duracion), una petición con la misma
+ * contraseña se acepta comparando el HMAC, sin leer la tabla usuarios ni ejecutar BCrypt.
+ *
+ * La clave del HMAC se genera al arrancar y nunca sale de memoria, así que la caché no guarda nada
+ * que permita recuperar ni probar contraseñas fuera del proceso. Modificar o eliminar un usuario
+ * descarta su entrada. Las peticiones con credenciales incorrectas no se guardan y siempre pasan por BCrypt.
+ */
+@Component
+public class ProveedorAutenticacionCacheado extends DaoAuthenticationProvider {
+
+    private static final String ALGORITMO = "HmacSHA256";
+
+    private record Entrada(byte[] huella, Authentication autenticacion, long caducidad) {
+    }
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+
+    // Cambia con cada invalidación: una verificación que empezó antes no guarda su resultado,
+    // porque puede haber leído el usuario tal como estaba antes del cambio
+    private final AtomicLong generacion = new AtomicLong();
+
+    private final SecretKeySpec clave;
+
+    private final ThreadLocal<Mac> macs;
+
+    @Value("${seguridad.cache-credenciales.duracion:PT5M}")
+    private Duration duracion;
+
+    @Value("${seguridad.cache-credenciales.capacidad:10000}")
+    private int capacidad;
+
+    public ProveedorAutenticacionCacheado(UserDetailsService userDetailsService, PasswordEncoder passwordEncoder) {
+        super(passwordEncoder);
+        setUserDetailsService(userDetailsService);
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        clave = new SecretKeySpec(bytes, ALGORITMO);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(ALGORITMO);
+                mac.init(clave);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("No se puede inicializar " + ALGORITMO, e);
+            }
+        });
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        String username = authentication.getName();
+        Object credenciales = authentication.getCredentials();
+        if (username == null || !(credenciales instanceof String contrasena)) {
+            return super.authenticate(authentication);
+        }
+
+        byte[] huella = huella(username, contrasena);
+        long ahora = System.nanoTime();
+        Entrada entrada = entradas.get(username);
+        if (entrada != null && ahora - entrada.caducidad() < 0 && MessageDigest.isEqual(entrada.huella(), huella)) {
+            UsernamePasswordAuthenticationToken resultado = UsernamePasswordAuthenticationToken.authenticated(
+                    entrada.autenticacion().getPrincipal(), null, entrada.autenticacion().getAuthorities());
+            resultado.setDetails(authentication.getDetails());
+            return resultado;
+        }
+
+        long generacionInicial = generacion.get();
+        Authentication resultado = super.authenticate(authentication);
+        if (entradas.size() >= capacidad) {
+            entradas.values().removeIf(e -> ahora - e.caducidad() >= 0);
+        }
+        if (entradas.size() < capacidad) {
+            entradas.put(username, new Entrada(huella, resultado, ahora + duracion.toNanos()));
+            if (generacion.get() != generacionInicial) {
+                entradas.remove(username);
+            }
+        }
+        return resultado;
+    }
+
+    // Se descarta al cambiar y de nuevo tras el commit, por si una petición concurrente
+    // ha vuelto a guardar la contraseña anterior mientras la transacción seguía abierta
+    @EventListener
+    public void alModificarUsuario(UsuarioModificadoEvent evento) {
+        invalidar(evento.username());
+    }
+
+    @TransactionalEventListener
+    public void alConfirmarModificacionUsuario(UsuarioModificadoEvent evento) {
+        invalidar(evento.username());
+    }
+
+    private void invalidar(String username) {
+        generacion.incrementAndGet();
+        entradas.remove(username);
+    }
+
+    private byte[] huella(String username, String contrasena) {
+        Mac mac = macs.get();
+        mac.update(username.getBytes(StandardCharsets.UTF_8));
+        mac.update((byte) 0);
+        return mac.doFinal(contrasena.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,5 +1,7 @@
 package es.santander.ascender.proyectoFinal2.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -12,11 +14,13 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import static org.springframework.security.config.Customizer.withDefaults;
 
+import java.time.Duration;
 import java.util.Arrays;
 
 @Configuration
@@ -24,9 +28,13 @@ import java.util.Arrays;
 @EnableMethodSecurity
 public class SecurityConfig {
 
+    // Con seguridad.bcrypt.fuerza=0 se mide la máquina al arrancar y se elige la fuerza que más se
+    // acerca a seguridad.bcrypt.tiempo-objetivo. Los hashes guardados llevan su propia fuerza, así que
+    // cambiarla no invalida las contraseñas existentes
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${seguridad.bcrypt.fuerza:0}") int fuerza,
+            @Value("${seguridad.bcrypt.tiempo-objetivo:PT0.25S}") Duration tiempoObjetivo) {
+        return new BCryptPasswordEncoder(fuerza > 0 ? fuerza : CalibracionBCrypt.calibrar(tiempoObjetivo));
     }
 
     @Bean
@@ -34,8 +42,25 @@ public class SecurityConfig {
         return authConfig.getAuthenticationManager();
     }
 
+    // El filtro de tokens es un @Component: sin esto Spring Boot lo registraría también en el servlet
+    // y se ejecutaría fuera de la cadena de seguridad
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public FilterRegistrationBean<FiltroTokenAcceso> registroFiltroTokenAcceso(FiltroTokenAcceso filtro) {
+        FilterRegistrationBean<FiltroTokenAcceso> registro = new FilterRegistrationBean<>(filtro);
+        registro.setEnabled(false);
+        return registro;
+    }
+
+    @Bean
+    public FilterRegistrationBean<FiltroLimitePeticiones> registroFiltroLimitePeticiones(FiltroLimitePeticiones filtro) {
+        FilterRegistrationBean<FiltroLimitePeticiones> registro = new FilterRegistrationBean<>(filtro);
+        registro.setEnabled(false);
+        return registro;
+    }
+
+    @Bean
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, FiltroTokenAcceso filtroTokenAcceso,
+            FiltroLimitePeticiones filtroLimitePeticiones) throws Exception {
         http
                 .csrf(csrf -> csrf.disable())
                 .cors(c->corsConfigurationSource())
@@ -51,6 +76,10 @@ public class SecurityConfig {
                         .requestMatchers("/api/auth/**").permitAll()
                         // Otras rutas...
                         .anyRequest().authenticated())
+                // Tokens de acceso emitidos por /api/auth/login; sin token se sigue aceptando httpBasic
+                .addFilterBefore(filtroTokenAcceso, BasicAuthenticationFilter.class)
+                // Límite de peticiones antes de cualquier autenticación (BCrypt, tokens o base de datos)
+                .addFilterBefore(filtroLimitePeticiones, FiltroTokenAcceso.class)
                 // Reemplazar formLogin con httpBasic para API REST
                 .httpBasic(withDefaults())
                 // Establecer la política de sesiones como STATELESS (API REST)
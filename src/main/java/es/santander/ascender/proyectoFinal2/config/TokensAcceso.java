@@ -0,0 +1,185 @@
+package es.santander.ascender.proyectoFinal2.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.santander.ascender.proyectoFinal2.dto.ParTokens;
+import es.santander.ascender.proyectoFinal2.model.RolUsuario;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Emisión y verificación de tokens firmados (JWT con HS256). El token de acceso lleva el username, el ID
+ * y el rol del usuario, así que verificarlo es calcular un HMAC y leer un JSON pequeño: no se consulta
+ * la base de datos ni se ejecuta BCrypt. El de refresco sólo sirve para pedir un par nuevo en
+ * /api/auth/refresh, que sí relee el usuario.
+ *
+ * Un token de acceso no se puede revocar antes de que caduque, por eso dura poco
+ * (seguridad.tokens.duracion-acceso). El de refresco lleva una huella de la contraseña del usuario:
+ * si la contraseña cambia, deja de valer.
+ */
+@Component
+public class TokensAcceso {
+
+    private static final Logger log = LoggerFactory.getLogger(TokensAcceso.class);
+
+    public static final String TIPO = "Bearer";
+
+    private static final String ALGORITMO = "HmacSHA256";
+
+    private static final String ACCESO = "acceso";
+    private static final String REFRESCO = "refresco";
+
+    private static final Base64.Encoder BASE64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder BASE64_DECODER = Base64.getUrlDecoder();
+
+    // Sólo se acepta esta cabecera: un token con otro algoritmo (p. ej. "none") se rechaza sin mirarlo
+    private static final String CABECERA = BASE64.encodeToString(
+            "{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+
+    /**
+     * Contenido de un token válido. huellaContrasena sólo está informada en los de refresco.
+     */
+    public record Datos(String username, Long id, RolUsuario rol, String tipo, String huellaContrasena) {
+    }
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Clave en Base64 de al menos 32 bytes. Si está vacía se genera una al arrancar
+    // y los tokens emitidos dejan de valer al reiniciar
+    @Value("${seguridad.tokens.clave:}")
+    private String claveConfigurada;
+
+    @Value("${seguridad.tokens.duracion-acceso:PT15M}")
+    private Duration duracionAcceso;
+
+    @Value("${seguridad.tokens.duracion-refresco:PT12H}")
+    private Duration duracionRefresco;
+
+    private SecretKeySpec clave;
+
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(() -> {
+        try {
+            Mac mac = Mac.getInstance(ALGORITMO);
+            mac.init(clave);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se puede inicializar " + ALGORITMO, e);
+        }
+    });
+
+    @PostConstruct
+    void iniciar() {
+        byte[] bytes;
+        if (claveConfigurada.isBlank()) {
+            log.warn("seguridad.tokens.clave no está configurada: se usa una clave aleatoria y los tokens "
+                    + "dejarán de valer al reiniciar");
+            bytes = new byte[32];
+            new SecureRandom().nextBytes(bytes);
+        } else {
+            bytes = Base64.getDecoder().decode(claveConfigurada.trim());
+            if (bytes.length < 32) {
+                throw new IllegalStateException("seguridad.tokens.clave debe tener al menos 32 bytes");
+            }
+        }
+        clave = new SecretKeySpec(bytes, ALGORITMO);
+    }
+
+    public ParTokens emitir(Usuario usuario) {
+        Instant ahora = Instant.now();
+        Map<String, Object> acceso = datos(usuario, ACCESO, ahora, duracionAcceso);
+        Map<String, Object> refresco = datos(usuario, REFRESCO, ahora, duracionRefresco);
+        refresco.put("pwd", huellaContrasena(usuario));
+        return new ParTokens(firmar(acceso), firmar(refresco), TIPO, duracionAcceso.toSeconds());
+    }
+
+    public Optional<Datos> verificarAcceso(String token) {
+        return verificar(token).filter(d -> ACCESO.equals(d.tipo()));
+    }
+
+    public Optional<Datos> verificarRefresco(String token) {
+        return verificar(token).filter(d -> REFRESCO.equals(d.tipo()));
+    }
+
+    // Compara la huella del token de refresco con la contraseña actual del usuario
+    public boolean contrasenaVigente(Datos datos, Usuario usuario) {
+        return datos.huellaContrasena() != null && MessageDigest.isEqual(
+                datos.huellaContrasena().getBytes(StandardCharsets.US_ASCII),
+                huellaContrasena(usuario).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private Optional<Datos> verificar(String token) {
+        int primerPunto = token.indexOf('.');
+        int segundoPunto = token.indexOf('.', primerPunto + 1);
+        if (primerPunto < 0 || segundoPunto < 0 || token.indexOf('.', segundoPunto + 1) >= 0
+                || !CABECERA.equals(token.substring(0, primerPunto))) {
+            return Optional.empty();
+        }
+        try {
+            byte[] firma = BASE64_DECODER.decode(token.substring(segundoPunto + 1));
+            byte[] esperada = hmac(token.substring(0, segundoPunto));
+            if (!MessageDigest.isEqual(firma, esperada)) {
+                return Optional.empty();
+            }
+            JsonNode datos = objectMapper.readTree(BASE64_DECODER.decode(token.substring(primerPunto + 1, segundoPunto)));
+            if (datos.path("exp").asLong() <= Instant.now().getEpochSecond()) {
+                return Optional.empty();
+            }
+            return Optional.of(new Datos(datos.path("sub").asText(), datos.path("uid").asLong(),
+                    RolUsuario.valueOf(datos.path("rol").asText()), datos.path("typ").asText(),
+                    datos.hasNonNull("pwd") ? datos.get("pwd").asText() : null));
+        } catch (IllegalArgumentException | IOException e) {
+            // Base64 o JSON mal formado, o un rol desconocido
+            return Optional.empty();
+        }
+    }
+
+    private static Map<String, Object> datos(Usuario usuario, String tipo, Instant ahora, Duration duracion) {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("sub", usuario.getUsername());
+        datos.put("uid", usuario.getId());
+        datos.put("rol", usuario.getRol().name());
+        datos.put("typ", tipo);
+        datos.put("iat", ahora.getEpochSecond());
+        datos.put("exp", ahora.plus(duracion).getEpochSecond());
+        return datos;
+    }
+
+    private String firmar(Map<String, Object> datos) {
+        try {
+            String firmado = CABECERA + "." + BASE64.encodeToString(objectMapper.writeValueAsBytes(datos));
+            return firmado + "." + BASE64.encodeToString(hmac(firmado));
+        } catch (IOException e) {
+            throw new IllegalStateException("No se puede generar el token", e);
+        }
+    }
+
+    // Los primeros 12 bytes del HMAC del hash guardado: no permite deducir la contraseña
+    private String huellaContrasena(Usuario usuario) {
+        return BASE64.encodeToString(Arrays.copyOf(hmac("pwd." + usuario.getPassword()), 12));
+    }
+
+    private byte[] hmac(String texto) {
+        return macs.get().doFinal(texto.getBytes(StandardCharsets.UTF_8));
+    }
+}
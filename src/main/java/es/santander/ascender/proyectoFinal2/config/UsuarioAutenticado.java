@@ -0,0 +1,50 @@
+package es.santander.ascender.proyectoFinal2.config;
+
+import es.santander.ascender.proyectoFinal2.model.RolUsuario;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.List;
+
+/**
+ * Principal de las peticiones autenticadas. Además del username lleva el ID y el rol del usuario,
+ * así que los controladores no tienen que volver a buscarlo en la tabla usuarios.
+ */
+public class UsuarioAutenticado extends User {
+
+    private final Long id;
+    private final RolUsuario rol;
+
+    public UsuarioAutenticado(Long id, String username, String password, RolUsuario rol) {
+        super(username, password, List.of(new SimpleGrantedAuthority("ROLE_" + rol)));
+        this.id = id;
+        this.rol = rol;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public RolUsuario getRol() {
+        return rol;
+    }
+
+    /**
+     * Usuario no gestionado con el ID, el username y el rol, sin leerlo de la base de datos. Sirve para
+     * asociarlo a una venta o compra y para las comprobaciones de permisos.
+     *
+     * No se usa getReferenceById: al devolver la venta o la compra, Jackson inicializaría el proxy
+     * y volvería la consulta a usuarios. Al tener ID, Hibernate lo trata como una entidad separada
+     * y sólo guarda su ID en la clave ajena (la relación no tiene cascada). En el JSON salen el ID,
+     * el username y el rol, igual que con el usuario leído: la contraseña es de sólo escritura y las
+     * listas de ventas y compras no se serializan.
+     */
+    public Usuario comoUsuario() {
+        Usuario usuario = new Usuario();
+        usuario.setId(id);
+        usuario.setUsername(getUsername());
+        usuario.setRol(rol);
+        return usuario;
+    }
+}
@@ -1,15 +1,48 @@
 package es.santander.ascender.proyectoFinal2.controller;
 
+import es.santander.ascender.proyectoFinal2.dto.ArticuloEscaneo;
 import es.santander.ascender.proyectoFinal2.model.Articulo;
 import es.santander.ascender.proyectoFinal2.service.ArticuloService;
+import es.santander.ascender.proyectoFinal2.service.ExportacionArticulosService;
+import es.santander.ascender.proyectoFinal2.service.HistoricoStockService;
+import es.santander.ascender.proyectoFinal2.service.ExportacionArticulosService.Formato;
+import es.santander.ascender.proyectoFinal2.service.ImportacionArticulosService;
+import es.santander.ascender.proyectoFinal2.service.ReintentosConcurrencia;
+import es.santander.ascender.proyectoFinal2.service.SnapshotCatalogoService;
+import es.santander.ascender.proyectoFinal2.service.SnapshotCatalogoService.Instantanea;
+import es.santander.ascender.proyectoFinal2.service.VersionCatalogo;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.validation.Valid;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -21,9 +54,62 @@ public class ArticuloController {
     @Autowired
     private ArticuloService articuloService;
 
+    @Autowired
+    private ImportacionArticulosService importacionArticulosService;
+
+    @Autowired
+    private ExportacionArticulosService exportacionArticulosService;
+
+    @Autowired
+    private VersionCatalogo versionCatalogo;
+
+    @Autowired
+    private SnapshotCatalogoService snapshotCatalogoService;
+
+    @Autowired
+    private HistoricoStockService historicoStockService;
+
+    @Autowired
+    private ReintentosConcurrencia reintentos;
+
+    // Los TPV sondean el catálogo periódicamente: si no ha cambiado se responde 304
+    // comparando If-None-Match con la versión en memoria, sin consultar la base de datos
     @GetMapping
-    public ResponseEntity<List<Articulo>> listarArticulos() {
-        return ResponseEntity.ok(articuloService.listarTodos());
+    public ResponseEntity<List<Articulo>> listarArticulos(WebRequest request) {
+        String etag = versionCatalogo.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(articuloService.listarTodos());
+    }
+
+    @GetMapping("/pagina")
+    public ResponseEntity<?> listarPagina(@RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "100") int limite,
+                                          @RequestParam(required = false) String familia) {
+        try {
+            return ResponseEntity.ok(articuloService.listarPagina(cursor, limite, familia));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // Sincronización incremental de los TPV: artículos cambiados desde la secuencia indicada
+    @GetMapping("/cambios")
+    public ResponseEntity<?> listarCambios(@RequestParam(defaultValue = "0") long desde,
+                                           @RequestParam(defaultValue = "500") int limite) {
+        try {
+            return ResponseEntity.ok(articuloService.listarCambios(desde, limite));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
     }
 
     @GetMapping("/{id}")
@@ -33,6 +119,37 @@ public class ArticuloController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    // Stock del artículo en una fecha pasada (o en este momento si no se indica), según el libro de movimientos
+    @GetMapping("/{id}/stock")
+    public ResponseEntity<?> stockEnFecha(@PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fecha) {
+        try {
+            return ResponseEntity.ok(historicoStockService.stockEnFecha(id, fecha == null ? LocalDateTime.now() : fecha));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    // Ajuste de stock (recuento, mermas): suma la cantidad indicada, negativa para descontar.
+    // Es la única forma de cambiar el stock fuera de ventas y compras; PUT lo ignora
+    @PostMapping("/{id}/stock")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> ajustarStock(@PathVariable Long id, @RequestParam int cantidad) {
+        try {
+            reintentos.ejecutar(() -> articuloService.actualizarStock(id, cantidad));
+            return articuloService.buscarPorId(id).map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        } catch (ConcurrencyFailureException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", "No se ha podido ajustar el stock por un conflicto con otra operación. Inténtelo de nuevo");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+    }
+
     @GetMapping("/codigo/{codigoBarras}")
     public ResponseEntity<?> buscarPorCodigoBarras(@PathVariable String codigoBarras) {
         Optional<Articulo> articulo = articuloService.buscarPorCodigoBarras(codigoBarras);
@@ -40,16 +157,56 @@ public class ArticuloController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @GetMapping("/escaneo/{codigoBarras}")
+    public ResponseEntity<?> buscarParaEscaneo(@PathVariable String codigoBarras) {
+        Optional<ArticuloEscaneo> articulo = articuloService.buscarParaEscaneo(codigoBarras);
+        return articulo.map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @GetMapping("/familia/{familia}")
-    public ResponseEntity<List<Articulo>> buscarPorFamilia(@PathVariable String familia) {
-        return ResponseEntity.ok(articuloService.buscarPorFamilia(familia));
+    public ResponseEntity<List<Articulo>> buscarPorFamilia(@PathVariable String familia, WebRequest request) {
+        String etag = versionCatalogo.etag();
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(articuloService.buscarPorFamilia(familia));
     }
 
+    // Con un nombre vacío no se devuelve ningún artículo; el catálogo completo se recorre con /pagina
     @GetMapping("/buscar")
     public ResponseEntity<List<Articulo>> buscarPorNombre(@RequestParam String nombre) {
         return ResponseEntity.ok(articuloService.buscarPorNombre(nombre));
     }
 
+    @GetMapping("/busqueda")
+    public ResponseEntity<?> buscarTexto(@RequestParam String q,
+                                         @RequestParam(defaultValue = "0") int pagina,
+                                         @RequestParam(defaultValue = "20") int tamano) {
+        try {
+            return ResponseEntity.ok(articuloService.buscarTexto(q, pagina, tamano));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    @GetMapping("/sugerencias")
+    public ResponseEntity<?> sugerir(@RequestParam String prefijo,
+                                     @RequestParam(defaultValue = "10") int limite) {
+        try {
+            return ResponseEntity.ok(articuloService.sugerir(prefijo, limite));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> crearArticulo(@Valid @RequestBody Articulo articulo) {
@@ -63,6 +220,87 @@ public class ArticuloController {
         }
     }
 
+    // Alta masiva desde CSV: el cuerpo se lee en streaming, sin cargar el fichero en memoria
+    @PostMapping(value = "/import", consumes = { "text/csv", "text/plain" })
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> importarArticulos(InputStream cuerpo) throws IOException {
+        try {
+            return ResponseEntity.ok(importacionArticulosService.importar(
+                    new InputStreamReader(cuerpo, StandardCharsets.UTF_8)));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", e.getMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    // Exportación completa del catálogo (JSON Lines o CSV) escrita en streaming
+    @GetMapping("/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<?> exportarArticulos(@RequestParam(defaultValue = "jsonl") String formato) {
+        Formato tipo;
+        try {
+            tipo = Formato.valueOf(formato.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", "Formato no soportado: " + formato + ". Los valores permitidos son: jsonl, csv");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        StreamingResponseBody cuerpo = salida -> exportacionArticulosService.exportar(salida, tipo);
+        return ResponseEntity.ok()
+                .contentType(tipo == Formato.CSV ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                        : new MediaType("application", "x-ndjson"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=catalogo." + tipo.name().toLowerCase(Locale.ROOT))
+                .body(cuerpo);
+    }
+
+    // Instantánea binaria del catálogo para los TPV. Sin cabecera Range se envía con sendfile
+    // si el conector lo admite, o con FileChannel.transferTo; con Range, Spring sirve sólo las regiones pedidas
+    @GetMapping("/snapshot")
+    public ResponseEntity<?> descargarSnapshot(WebRequest webRequest, HttpServletRequest request,
+                                               HttpServletResponse response) throws IOException {
+        Optional<Instantanea> instantanea = snapshotCatalogoService.actual();
+        if (instantanea.isEmpty()) {
+            Map<String, Object> body = new HashMap<>();
+            body.put("mensaje", "La instantánea del catálogo todavía no se ha generado");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(body);
+        }
+        Path fichero = instantanea.get().fichero();
+        String etag = instantanea.get().etag();
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        if (request.getHeader(HttpHeaders.RANGE) != null) {
+            return ResponseEntity.ok()
+                    .eTag(etag)
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                    .body(new FileSystemResource(fichero));
+        }
+
+        long longitud = Files.size(fichero);
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(longitud);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            // Tomcat envía el fichero desde el núcleo al terminar la petición, sin pasar por el heap
+            request.setAttribute("org.apache.tomcat.sendfile.filename", fichero.toAbsolutePath().toString());
+            request.setAttribute("org.apache.tomcat.sendfile.start", 0L);
+            request.setAttribute("org.apache.tomcat.sendfile.end", longitud);
+        } else {
+            try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+                WritableByteChannel destino = Channels.newChannel(response.getOutputStream());
+                long enviado = 0;
+                while (enviado < longitud) {
+                    enviado += canal.transferTo(enviado, longitud - enviado, destino);
+                }
+            }
+        }
+        return null;
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> actualizarArticulo(@PathVariable Long id, @Valid @RequestBody Articulo articulo) {
@@ -74,6 +312,11 @@ public class ArticuloController {
             Map<String, Object> response = new HashMap<>();
             response.put("mensaje", e.getMessage());
             return ResponseEntity.badRequest().body(response);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            // No se reintenta: el usuario debe ver los datos actuales antes de volver a guardar
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", "El artículo ha sido modificado por otra operación. Recárguelo y vuelva a intentarlo");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
         }
     }
 
@@ -1,18 +1,24 @@
 package es.santander.ascender.proyectoFinal2.controller;
 
+import es.santander.ascender.proyectoFinal2.config.TokensAcceso;
+import es.santander.ascender.proyectoFinal2.dto.ParTokens;
 import es.santander.ascender.proyectoFinal2.model.Usuario;
 import es.santander.ascender.proyectoFinal2.service.UsuarioService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/auth")
@@ -24,16 +30,51 @@ public class AuthController {
     @Autowired
     private UsuarioService usuarioService;
 
+    @Autowired
+    private TokensAcceso tokensAcceso;
+
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody LoginRequest loginRequest) {
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
+        Authentication authentication;
+        try {
+            authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword()));
+        } catch (AuthenticationException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("mensaje", "Usuario o contraseña incorrectos"));
+        }
 
         SecurityContextHolder.getContext().setAuthentication(authentication);
 
+        // El cliente envía el token de acceso en "Authorization: Bearer ..." en lugar de la contraseña
+        Optional<Usuario> usuario = usuarioService.buscarPorUsername(authentication.getName());
+        if (usuario.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("mensaje", "Usuario no autenticado"));
+        }
+        return ResponseEntity.ok(respuestaTokens("Inicio de sesión exitoso", tokensAcceso.emitir(usuario.get())));
+    }
+
+    // Cambia un token de refresco válido por un par nuevo. Se relee el usuario para recoger
+    // cambios de rol y rechazar usuarios eliminados o con la contraseña cambiada
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refrescar(@RequestBody Map<String, String> peticion) {
+        String token = peticion.get("tokenRefresco");
+        Optional<TokensAcceso.Datos> datos = token == null ? Optional.empty() : tokensAcceso.verificarRefresco(token);
+        Optional<Usuario> usuario = datos.flatMap(d -> usuarioService.buscarPorId(d.id()));
+        if (usuario.isEmpty() || !tokensAcceso.contrasenaVigente(datos.get(), usuario.get())) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("mensaje", "Token de refresco no válido o caducado"));
+        }
+        return ResponseEntity.ok(respuestaTokens("Tokens renovados", tokensAcceso.emitir(usuario.get())));
+    }
+
+    // Misma respuesta para el login y el refresco
+    private static Map<String, Object> respuestaTokens(String mensaje, ParTokens tokens) {
         Map<String, Object> response = new HashMap<>();
-        response.put("mensaje", "Inicio de sesión exitoso");
-        return ResponseEntity.ok(response);
+        response.put("mensaje", mensaje);
+        response.put("tokenAcceso", tokens.tokenAcceso());
+        response.put("tokenRefresco", tokens.tokenRefresco());
+        response.put("tipo", tokens.tipo());
+        response.put("expiraEn", tokens.expiraEn());
+        return response;
     }
 
     @PostMapping("/registro")
@@ -43,6 +84,11 @@ public class AuthController {
             return ResponseEntity.status(HttpStatus.CREATED).body(nuevoUsuario);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("mensaje", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            // Demasiadas contraseñas pendientes de cifrar: el cliente debe reintentar más tarde
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("mensaje", "Hay demasiadas peticiones en curso. Inténtelo de nuevo en unos segundos"));
         }
     }
 
@@ -3,10 +3,12 @@ package es.santander.ascender.proyectoFinal2.controller;
 import es.santander.ascender.proyectoFinal2.model.Compra;
 import es.santander.ascender.proyectoFinal2.model.Usuario;
 import es.santander.ascender.proyectoFinal2.service.CompraService;
+import es.santander.ascender.proyectoFinal2.service.ReintentosConcurrencia;
 import es.santander.ascender.proyectoFinal2.service.UsuarioService;
 import io.swagger.v3.oas.annotations.Operation;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -37,6 +39,12 @@ public class CompraController {
     @Autowired
     private UsuarioService usuarioService;
 
+    @Autowired
+    private ReintentosConcurrencia reintentos;
+
+    @Autowired
+    private PeticionesIdempotentes peticionesIdempotentes;
+
     /**
      * Obtiene un listado de todas las compras registradas en el sistema.
      * 
@@ -80,16 +88,28 @@ public class CompraController {
      * Incrementa el stock de los artículos comprados automáticamente.
      * 
      * @param compra Datos de la compra a realizar con sus detalles
+     * @param claveIdempotencia Cabecera Idempotency-Key opcional: los reintentos con la misma clave no repiten la compra
      * @return La compra creada con estado 201 Created o error con 400 Bad Request
      */
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(summary = "Realizar nueva compra", description = "Crea una nueva compra asociada al usuario autenticado")
     @PostMapping
-    public ResponseEntity<?> realizarCompra(@Valid @RequestBody Compra compra) {
+    public ResponseEntity<?> realizarCompra(@Valid @RequestBody Compra compra,
+            @RequestHeader(value = PeticionesIdempotentes.CABECERA, required = false) String claveIdempotencia) {
+        if (claveIdempotencia == null) {
+            return tramitarCompra(compra);
+        }
+        // Un reintento con la misma clave no vuelve a sumar stock: recibe la respuesta de la primera petición
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return peticionesIdempotentes.ejecutar(username, "POST /api/compras", claveIdempotencia, huella(compra),
+                () -> tramitarCompra(compra));
+    }
+
+    private ResponseEntity<?> tramitarCompra(Compra compra) {
         try {
             // Obtener el usuario autenticado
             Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            Optional<Usuario> usuario = usuarioService.buscarPorUsername(auth.getName());
+            Optional<Usuario> usuario = usuarioService.usuarioAutenticado(auth);
 
             if (usuario.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("mensaje", "Usuario no autenticado"));
@@ -101,15 +121,27 @@ public class CompraController {
             }
 
             compra.setUsuario(usuario.get());
-            Compra nuevaCompra = compraService.realizarCompra(compra);
+            Compra nuevaCompra = reintentos.ejecutar(() -> compraService.realizarCompra(compra));
             return ResponseEntity.status(HttpStatus.CREATED).body(nuevaCompra);
         } catch (IllegalArgumentException | IllegalStateException e) {
             Map<String, Object> response = new HashMap<>();
             response.put("mensaje", e.getMessage());
             return ResponseEntity.badRequest().body(response);
+        } catch (ConcurrencyFailureException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", "No se ha podido tramitar la compra por un conflicto con otra operación. Inténtelo de nuevo");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
         }
     }
 
+    // Artículos, cantidades y precios de la compra, para detectar una clave de idempotencia reutilizada con otra compra
+    private static List<String> huella(Compra compra) {
+        return compra.getDetalles().stream()
+                .map(d -> (d.getArticulo() == null ? null : d.getArticulo().getId()) + "x" + d.getCantidad()
+                        + "@" + d.getPrecioUnitario())
+                .toList();
+    }
+
     /**
      * Anula una compra existente y ajusta el stock de los artículos afectados.
      * 
@@ -119,7 +151,7 @@ public class CompraController {
     @DeleteMapping("/{id}")
     public ResponseEntity<?> anularCompra(@PathVariable Long id) {
         try {
-            compraService.anularCompra(id);
+            reintentos.ejecutar(() -> compraService.anularCompra(id));
             Map<String, Object> response = new HashMap<>();
             response.put("mensaje", "Compra anulada correctamente");
             return ResponseEntity.ok(response);
@@ -127,6 +159,10 @@ public class CompraController {
             Map<String, Object> response = new HashMap<>();
             response.put("mensaje", e.getMessage());
             return ResponseEntity.badRequest().body(response);
+        } catch (ConcurrencyFailureException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", "No se ha podido anular la compra por un conflicto con otra operación. Inténtelo de nuevo");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
         }
     }
 }
\ No newline at end of file
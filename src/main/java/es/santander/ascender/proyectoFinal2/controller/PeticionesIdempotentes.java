@@ -0,0 +1,143 @@
+package es.santander.ascender.proyectoFinal2.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Registro en memoria de las respuestas de las peticiones que llevan cabecera Idempotency-Key.
+ * La clave se guarda por usuario y operación. Si llega un duplicado mientras la primera petición
+ * está en curso, espera a su resultado en lugar de ejecutarla otra vez. Si llega después, recibe
+ * la respuesta guardada.
+ *
+ * Sólo se guardan las respuestas definitivas. Tras un 409 o un 5xx la operación no se ha hecho, así que
+ * la clave se olvida y un reintento la ejecuta de nuevo. Las entradas caducan a los idempotencia.duracion
+ * y nunca se guardan más de idempotencia.capacidad; cuando se supera se descartan las más antiguas.
+ */
+@Component
+public class PeticionesIdempotentes {
+
+    public static final String CABECERA = "Idempotency-Key";
+
+    // Se añade a las respuestas repetidas para que el cliente sepa que no se ha ejecutado de nuevo
+    public static final String CABECERA_REPETIDA = "Idempotent-Replayed";
+
+    private static final int LONGITUD_MAXIMA_CLAVE = 255;
+
+    private static final class Entrada {
+
+        private final String clave;
+        private final Object huella;
+        private final long caducidad;
+        private final CompletableFuture<ResponseEntity<?>> respuesta = new CompletableFuture<>();
+
+        Entrada(String clave, Object huella, long caducidad) {
+            this.clave = clave;
+            this.huella = huella;
+            this.caducidad = caducidad;
+        }
+
+        boolean caducada(long ahora) {
+            return ahora - caducidad >= 0;
+        }
+    }
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+
+    // Todas las entradas duran lo mismo, así que el orden de llegada es también el de caducidad
+    private final Queue<Entrada> porAntiguedad = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger tamano = new AtomicInteger();
+
+    @Value("${idempotencia.duracion:PT24H}")
+    private Duration duracion;
+
+    @Value("${idempotencia.capacidad:10000}")
+    private int capacidad;
+
+    /**
+     * Ejecuta la operación una sola vez por clave. La huella identifica el contenido de la petición:
+     * reutilizar una clave con otro contenido es un error del cliente y se responde 422.
+     */
+    public ResponseEntity<?> ejecutar(String usuario, String operacion, String clave, Object huella,
+            Supplier<ResponseEntity<?>> accion) {
+        if (clave.isBlank() || clave.length() > LONGITUD_MAXIMA_CLAVE) {
+            return ResponseEntity.badRequest().body(Map.of("mensaje",
+                    "La cabecera " + CABECERA + " debe tener entre 1 y " + LONGITUD_MAXIMA_CLAVE + " caracteres"));
+        }
+        String id = usuario + '\n' + operacion + '\n' + clave;
+        long ahora = System.nanoTime();
+        Entrada nueva = new Entrada(id, huella, ahora + duracion.toNanos());
+        Entrada actual = entradas.compute(id, (k, existente) ->
+                existente == null || existente.caducada(ahora) ? nueva : existente);
+
+        if (actual != nueva) {
+            if (!Objects.equals(actual.huella, huella)) {
+                return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(Map.of("mensaje",
+                        "La clave " + clave + " ya se ha usado con una petición distinta"));
+            }
+            ResponseEntity<?> respuesta = esperar(actual);
+            return ResponseEntity.status(respuesta.getStatusCode())
+                    .headers(respuesta.getHeaders())
+                    .header(CABECERA_REPETIDA, "true")
+                    .body(respuesta.getBody());
+        }
+
+        porAntiguedad.add(nueva);
+        tamano.incrementAndGet();
+        descartarAntiguas(ahora);
+        ResponseEntity<?> respuesta;
+        try {
+            respuesta = accion.get();
+        } catch (RuntimeException | Error e) {
+            entradas.remove(id, nueva);
+            nueva.respuesta.completeExceptionally(e);
+            throw e;
+        }
+        int estado = respuesta.getStatusCode().value();
+        if (estado == HttpStatus.CONFLICT.value() || estado >= 500) {
+            entradas.remove(id, nueva);
+        }
+        // Los duplicados que ya estaban esperando reciben esta misma respuesta aunque no se guarde
+        nueva.respuesta.complete(respuesta);
+        return respuesta;
+    }
+
+    private static ResponseEntity<?> esperar(Entrada entrada) {
+        try {
+            return entrada.respuesta.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+
+    // Quita de la cabeza de la cola las entradas caducadas y, si se supera la capacidad, las más antiguas
+    private void descartarAntiguas(long ahora) {
+        Entrada cabeza;
+        while ((cabeza = porAntiguedad.peek()) != null
+                && (cabeza.caducada(ahora) || tamano.get() > capacidad)) {
+            // Una entrada aún en curso no se descarta: los duplicados la necesitan para esperar
+            if (!cabeza.respuesta.isDone() && !cabeza.caducada(ahora)) {
+                break;
+            }
+            if (porAntiguedad.remove(cabeza)) {
+                tamano.decrementAndGet();
+                entradas.remove(cabeza.clave, cabeza);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package es.santander.ascender.proyectoFinal2.controller;
+
+import es.santander.ascender.proyectoFinal2.dto.Reserva;
+import es.santander.ascender.proyectoFinal2.dto.SolicitudReserva;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import es.santander.ascender.proyectoFinal2.model.Venta;
+import es.santander.ascender.proyectoFinal2.service.ReintentosConcurrencia;
+import es.santander.ascender.proyectoFinal2.service.ReservaService;
+import es.santander.ascender.proyectoFinal2.service.UsuarioService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.*;
+
+import io.swagger.v3.oas.annotations.Operation;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/reservas")
+@PreAuthorize("hasRole('ADMIN') or hasRole('USER')")
+public class ReservaController {
+
+    @Autowired
+    private ReservaService reservaService;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private ReintentosConcurrencia reintentos;
+
+    @PostMapping
+    @Operation(summary = "Reservar stock", description = "Retiene stock durante un tiempo limitado para el usuario autenticado")
+    public ResponseEntity<?> crear(@RequestBody SolicitudReserva solicitud) {
+        Optional<Usuario> usuario = usuarioAutenticado();
+        if (usuario.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("mensaje", "Usuario no autenticado"));
+        }
+        try {
+            if (solicitud.lineas() == null) {
+                throw new IllegalArgumentException("La reserva debe tener al menos un artículo");
+            }
+            Map<Long, Integer> lineas = new LinkedHashMap<>();
+            for (SolicitudReserva.Linea linea : solicitud.lineas()) {
+                if (linea.articuloId() == null) {
+                    throw new IllegalArgumentException("Falta el ID del artículo en una línea");
+                }
+                if (lineas.put(linea.articuloId(), linea.cantidad()) != null) {
+                    throw new IllegalArgumentException(
+                            "No se permiten artículos repetidos en la misma reserva. ID repetido: " + linea.articuloId());
+                }
+            }
+            Duration duracion = solicitud.segundos() == null ? null : Duration.ofSeconds(solicitud.segundos());
+            Reserva reserva = reservaService.crear(usuario.get(), lineas, duracion);
+            return ResponseEntity.status(HttpStatus.CREATED).body(reserva);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> buscar(@PathVariable String id) {
+        Optional<Usuario> usuario = usuarioAutenticado();
+        if (usuario.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("mensaje", "Usuario no autenticado"));
+        }
+        try {
+            return ResponseEntity.ok(reservaService.buscar(id, usuario.get()));
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    @PostMapping("/{id}/confirmar")
+    @Operation(summary = "Confirmar reserva", description = "Convierte la reserva en una venta del usuario autenticado")
+    public ResponseEntity<?> confirmar(@PathVariable String id) {
+        Optional<Usuario> usuario = usuarioAutenticado();
+        if (usuario.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("mensaje", "Usuario no autenticado"));
+        }
+        if (!usuarioService.puedeRealizarVenta(usuario.get())) {
+            return error(HttpStatus.FORBIDDEN, "No tiene permisos para realizar ventas");
+        }
+        try {
+            Venta venta = reintentos.ejecutar(() -> reservaService.confirmar(id, usuario.get()));
+            return ResponseEntity.status(HttpStatus.CREATED).body(venta);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (ConcurrencyFailureException e) {
+            return error(HttpStatus.CONFLICT,
+                    "No se ha podido tramitar la venta por un conflicto con otra operación. Inténtelo de nuevo");
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> liberar(@PathVariable String id) {
+        Optional<Usuario> usuario = usuarioAutenticado();
+        if (usuario.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("mensaje", "Usuario no autenticado"));
+        }
+        try {
+            reservaService.liberar(id, usuario.get());
+            return ResponseEntity.ok(Map.of("mensaje", "Reserva liberada correctamente"));
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    private Optional<Usuario> usuarioAutenticado() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        return usuarioService.usuarioAutenticado(auth);
+    }
+
+    private static ResponseEntity<Map<String, Object>> error(HttpStatus estado, String mensaje) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("mensaje", mensaje);
+        return ResponseEntity.status(estado).body(response);
+    }
+}
@@ -3,6 +3,7 @@ package es.santander.ascender.proyectoFinal2.controller;
 import es.santander.ascender.proyectoFinal2.model.Usuario;
 import es.santander.ascender.proyectoFinal2.service.UsuarioService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -13,6 +14,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/usuarios")
@@ -55,6 +57,11 @@ public class UsuarioController {
             Map<String, Object> response = new HashMap<>();
             response.put("mensaje", e.getMessage());
             return ResponseEntity.badRequest().body(response);
+        } catch (RejectedExecutionException e) {
+            // Demasiadas contraseñas pendientes de cifrar: el cliente debe reintentar más tarde
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("mensaje", "Hay demasiadas peticiones en curso. Inténtelo de nuevo en unos segundos"));
         }
     }
 
@@ -68,6 +75,10 @@ public class UsuarioController {
             Map<String, Object> response = new HashMap<>();
             response.put("mensaje", e.getMessage());
             return ResponseEntity.badRequest().body(response);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("mensaje", "Hay demasiadas peticiones en curso. Inténtelo de nuevo en unos segundos"));
         }
     }
 
@@ -1,25 +1,38 @@
 package es.santander.ascender.proyectoFinal2.controller;
 
+import es.santander.ascender.proyectoFinal2.dto.TicketVenta;
 import es.santander.ascender.proyectoFinal2.model.DetalleVenta;
 import es.santander.ascender.proyectoFinal2.model.Usuario;
 import es.santander.ascender.proyectoFinal2.model.Venta;
+import es.santander.ascender.proyectoFinal2.service.AgrupadorVentas;
+import es.santander.ascender.proyectoFinal2.service.ReintentosConcurrencia;
 import es.santander.ascender.proyectoFinal2.service.UsuarioService;
+import es.santander.ascender.proyectoFinal2.service.VentaAsincronaService;
 import es.santander.ascender.proyectoFinal2.service.VentaService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import io.swagger.v3.oas.annotations.Operation;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/ventas")
@@ -31,6 +44,23 @@ public class VentaController {
     @Autowired
     private UsuarioService usuarioService;
 
+    @Autowired
+    private ReintentosConcurrencia reintentos;
+
+    @Autowired
+    private PeticionesIdempotentes peticionesIdempotentes;
+
+    @Autowired
+    private VentaAsincronaService ventaAsincronaService;
+
+    // Tiempo que se indica en Retry-After cuando la cola de ventas (agrupadas o asíncronas) está llena
+    @Value("${ventas.asincronas.reintentar-tras:PT1S}")
+    private Duration reintentarTras;
+
+    // Sólo existe si el commit agrupado de ventas está activado
+    @Autowired(required = false)
+    private AgrupadorVentas agrupadorVentas;
+
     @GetMapping
     public ResponseEntity<List<Venta>> listarVentas() {
         return ResponseEntity.ok(ventaService.listarTodas());
@@ -61,11 +91,22 @@ public class VentaController {
     @PostMapping
     @PreAuthorize("hasRole('ADMIN') or hasRole('USER')")
     @Operation(summary = "Realizar nueva venta", description = "Crea una nueva venta asociada al usuario autenticado")
-    public ResponseEntity<?> realizarVenta(@RequestBody Venta venta) {
+    public ResponseEntity<?> realizarVenta(@RequestBody Venta venta,
+            @RequestHeader(value = PeticionesIdempotentes.CABECERA, required = false) String claveIdempotencia) {
+        if (claveIdempotencia == null) {
+            return tramitarVenta(venta);
+        }
+        // Un reintento con la misma clave no vuelve a descontar stock: recibe la respuesta de la primera petición
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        return peticionesIdempotentes.ejecutar(username, "POST /api/ventas", claveIdempotencia, huella(venta),
+                () -> tramitarVenta(venta));
+    }
+
+    private ResponseEntity<?> tramitarVenta(Venta venta) {
         try {
             // Obtener el usuario autenticado
             Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-            Optional<Usuario> usuario = usuarioService.buscarPorUsername(auth.getName());
+            Optional<Usuario> usuario = usuarioService.usuarioAutenticado(auth);
 
             if (usuario.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("mensaje", "Usuario no autenticado"));
@@ -81,19 +122,113 @@ public class VentaController {
             // usuario que venga en la petición)
             venta.setUsuario(usuario.get());
 
-            Venta nuevaVenta = ventaService.realizarVenta(venta);
+            Venta nuevaVenta = agrupadorVentas != null
+                    ? agrupadorVentas.realizar(venta)
+                    : reintentos.ejecutar(() -> ventaService.realizarVenta(venta));
             return ResponseEntity.status(HttpStatus.CREATED).body(nuevaVenta);
         } catch (IllegalArgumentException | IllegalStateException e) {
             Map<String, Object> response = new HashMap<>();
             response.put("mensaje", e.getMessage());
             return ResponseEntity.badRequest().body(response);
+        } catch (ConcurrencyFailureException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", "No se ha podido tramitar la venta por un conflicto con otra operación. Inténtelo de nuevo");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        } catch (RejectedExecutionException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", "Hay demasiadas ventas pendientes de tramitar. Inténtelo de nuevo en unos segundos");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, reintentarTras.toSeconds())))
+                    .body(response);
         }
     }
 
+    @PostMapping("/asincrona")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('USER')")
+    @Operation(summary = "Enviar venta asíncrona", description = "Encola la venta y devuelve un ticket para consultar su resultado")
+    public ResponseEntity<?> enviarVentaAsincrona(@RequestBody Venta venta) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        Optional<Usuario> usuario = usuarioService.usuarioAutenticado(auth);
+        if (usuario.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("mensaje", "Usuario no autenticado"));
+        }
+        if (!usuarioService.puedeRealizarVenta(usuario.get())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Map.of("mensaje", "No tiene permisos para realizar ventas"));
+        }
+        venta.setUsuario(usuario.get());
+        try {
+            TicketVenta ticket = ventaAsincronaService.enviar(venta);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/ventas/tickets/" + ticket.id()))
+                    .body(ticket);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("mensaje", e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, reintentarTras.toSeconds())))
+                    .body(Map.of("mensaje", "Hay demasiadas ventas pendientes de tramitar. Inténtelo de nuevo en unos segundos"));
+        }
+    }
+
+    @GetMapping("/tickets/{id}")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('USER')")
+    public ResponseEntity<?> consultarTicket(@PathVariable String id) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        Optional<Usuario> usuario = usuarioService.usuarioAutenticado(auth);
+        if (usuario.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("mensaje", "Usuario no autenticado"));
+        }
+        try {
+            return ResponseEntity.ok(ventaAsincronaService.buscar(id, usuario.get()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("mensaje", e.getMessage()));
+        }
+    }
+
+    // Server-Sent Events: envía el estado actual del ticket y, si estaba pendiente, el final cuando termine
+    @GetMapping(value = "/tickets/{id}/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('ADMIN') or hasRole('USER')")
+    public ResponseEntity<SseEmitter> seguirTicket(@PathVariable String id) throws IOException {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        Optional<Usuario> usuario = usuarioService.usuarioAutenticado(auth);
+        if (usuario.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        TicketVenta ticket;
+        try {
+            ticket = ventaAsincronaService.buscar(id, usuario.get());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+        SseEmitter emisor = new SseEmitter();
+        emisor.send(SseEmitter.event().name("estado").data(ticket, MediaType.APPLICATION_JSON));
+        if (ticket.terminado()) {
+            emisor.complete();
+        } else {
+            ventaAsincronaService.alTerminar(id, usuario.get()).thenAccept(terminado -> {
+                try {
+                    emisor.send(SseEmitter.event().name("estado").data(terminado, MediaType.APPLICATION_JSON));
+                    emisor.complete();
+                } catch (IOException e) {
+                    emisor.completeWithError(e);
+                }
+            });
+        }
+        return ResponseEntity.ok(emisor);
+    }
+
+    // Artículos y cantidades de la venta, para detectar una clave de idempotencia reutilizada con otra venta
+    private static List<String> huella(Venta venta) {
+        return venta.getDetalles().stream()
+                .map(d -> (d.getArticulo() == null ? null : d.getArticulo().getId()) + "x" + d.getCantidad())
+                .toList();
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<?> anularVenta(@PathVariable Long id) {
         try {
-            ventaService.anularVenta(id);
+            reintentos.ejecutar(() -> ventaService.anularVenta(id));
             Map<String, Object> response = new HashMap<>();
             response.put("mensaje", "Venta anulada correctamente");
             return ResponseEntity.ok(response);
@@ -101,6 +236,10 @@ public class VentaController {
             Map<String, Object> response = new HashMap<>();
             response.put("mensaje", e.getMessage());
             return ResponseEntity.badRequest().body(response);
+        } catch (ConcurrencyFailureException e) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("mensaje", "No se ha podido anular la venta por un conflicto con otra operación. Inténtelo de nuevo");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
         }
     }
 }
\ No newline at end of file
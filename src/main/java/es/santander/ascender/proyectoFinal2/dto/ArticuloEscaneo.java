@@ -0,0 +1,6 @@
+package es.santander.ascender.proyectoFinal2.dto;
+
+// Datos mínimos de un artículo que necesita el TPV al escanear su código de barras
+public record ArticuloEscaneo(Long id, String codigoBarras, String nombre, Double precioVenta, Integer stock,
+        boolean borrado) {
+}
@@ -0,0 +1,5 @@
+package es.santander.ascender.proyectoFinal2.dto;
+
+// Campos de texto de un artículo que necesitan los índices de búsqueda
+public record ArticuloTexto(Long id, String codigoBarras, String nombre, String descripcion, boolean borrado) {
+}
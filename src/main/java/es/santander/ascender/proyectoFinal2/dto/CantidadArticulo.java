@@ -0,0 +1,5 @@
+package es.santander.ascender.proyectoFinal2.dto;
+
+// Suma de las cantidades de los movimientos de stock de un artículo
+public record CantidadArticulo(Long articuloId, Long cantidad) {
+}
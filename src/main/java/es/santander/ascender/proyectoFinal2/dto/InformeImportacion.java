@@ -0,0 +1,13 @@
+package es.santander.ascender.proyectoFinal2.dto;
+
+import java.util.List;
+
+/**
+ * Resultado de una importación masiva. 'errores' se limita a los primeros
+ * fallos para que el informe no crezca con el tamaño del fichero; 'erroneas' los cuenta todos.
+ */
+public record InformeImportacion(int procesadas, int importadas, int erroneas, List<ErrorFila> errores) {
+
+    public record ErrorFila(int linea, String codigoBarras, String mensaje) {
+    }
+}
@@ -0,0 +1,9 @@
+package es.santander.ascender.proyectoFinal2.dto;
+
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+
+import java.util.List;
+
+// Página del catálogo. siguienteCursor es null cuando no quedan más artículos
+public record PaginaArticulos(List<Articulo> articulos, String siguienteCursor) {
+}
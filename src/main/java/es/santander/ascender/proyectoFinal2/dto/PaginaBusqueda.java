@@ -0,0 +1,9 @@
+package es.santander.ascender.proyectoFinal2.dto;
+
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+
+import java.util.List;
+
+// Página de resultados de la búsqueda de texto, ordenados por relevancia
+public record PaginaBusqueda(List<Articulo> articulos, int total, int pagina, int tamano) {
+}
@@ -0,0 +1,10 @@
+package es.santander.ascender.proyectoFinal2.dto;
+
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+
+import java.util.List;
+
+// Artículos modificados desde una secuencia, incluidos los borrados (borrado = true).
+// El cliente debe pedir la siguiente página con desde = hasta; completo indica que no quedan más
+public record PaginaCambios(List<Articulo> articulos, long hasta, boolean completo) {
+}
@@ -0,0 +1,5 @@
+package es.santander.ascender.proyectoFinal2.dto;
+
+// Tokens que emite /api/auth/login y /api/auth/refresh: expiraEn son los segundos de validez del token de acceso
+public record ParTokens(String tokenAcceso, String tokenRefresco, String tipo, long expiraEn) {
+}
@@ -0,0 +1,8 @@
+package es.santander.ascender.proyectoFinal2.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+// Reserva temporal de stock: unidades retenidas por artículo (id -> cantidad) hasta su caducidad
+public record Reserva(String id, String username, Map<Long, Integer> lineas, Instant caducidad) {
+}
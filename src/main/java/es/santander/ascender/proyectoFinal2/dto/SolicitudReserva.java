@@ -0,0 +1,10 @@
+package es.santander.ascender.proyectoFinal2.dto;
+
+import java.util.List;
+
+// Petición de reserva. segundos es opcional: si no se indica se usa la duración por defecto
+public record SolicitudReserva(List<Linea> lineas, Long segundos) {
+
+    public record Linea(Long articuloId, Integer cantidad) {
+    }
+}
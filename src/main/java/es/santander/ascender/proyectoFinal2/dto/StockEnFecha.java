@@ -0,0 +1,6 @@
+package es.santander.ascender.proyectoFinal2.dto;
+
+import java.time.LocalDateTime;
+
+public record StockEnFecha(Long articuloId, LocalDateTime fecha, long stock) {
+}
@@ -0,0 +1,5 @@
+package es.santander.ascender.proyectoFinal2.dto;
+
+// Sugerencia de autocompletado: lo justo para mostrarla y añadir el artículo a la venta
+public record Sugerencia(Long id, String nombre, String codigoBarras) {
+}
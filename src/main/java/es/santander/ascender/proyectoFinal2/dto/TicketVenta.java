@@ -0,0 +1,17 @@
+package es.santander.ascender.proyectoFinal2.dto;
+
+import java.time.Instant;
+
+// Estado de una venta enviada de forma asíncrona: ventaId sólo está informado si se ha completado,
+// mensaje sólo si se ha rechazado o ha fallado y finalizado sólo si ya ha terminado
+public record TicketVenta(String id, String username, Estado estado, Long ventaId, String mensaje, Instant creado,
+        Instant finalizado) {
+
+    public enum Estado {
+        PENDIENTE, COMPLETADA, RECHAZADA, ERROR
+    }
+
+    public boolean terminado() {
+        return estado != Estado.PENDIENTE;
+    }
+}
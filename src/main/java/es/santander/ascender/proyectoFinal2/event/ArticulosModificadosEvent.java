@@ -0,0 +1,31 @@
+package es.santander.ascender.proyectoFinal2.event;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Evento que publica ArticuloService cada vez que modifica artículos.
+ * Los índices en memoria lo escuchan una vez confirmada la transacción.
+ */
+public record ArticulosModificadosEvent(Set<Long> ids, TipoCambio tipo) {
+
+    public enum TipoCambio {
+        ALTA,
+        MODIFICACION,
+        BAJA,
+        STOCK
+    }
+
+    // Los cambios de stock no afectan a nombre, descripción ni código de barras
+    public boolean cambiaDatosCatalogo() {
+        return tipo != TipoCambio.STOCK;
+    }
+
+    public static ArticulosModificadosEvent de(Long id, TipoCambio tipo) {
+        return new ArticulosModificadosEvent(Set.of(id), tipo);
+    }
+
+    public static ArticulosModificadosEvent de(Collection<Long> ids, TipoCambio tipo) {
+        return new ArticulosModificadosEvent(Set.copyOf(ids), tipo);
+    }
+}
@@ -0,0 +1,8 @@
+package es.santander.ascender.proyectoFinal2.event;
+
+/**
+ * Evento que publica UsuarioService al modificar o eliminar un usuario. El username es el que tenía
+ * antes del cambio: quien guarde datos del usuario por su nombre debe descartarlos.
+ */
+public record UsuarioModificadoEvent(Long id, String username) {
+}
@@ -0,0 +1,90 @@
+package es.santander.ascender.proyectoFinal2.indice;
+
+import es.santander.ascender.proyectoFinal2.dto.ArticuloEscaneo;
+import es.santander.ascender.proyectoFinal2.event.ArticulosModificadosEvent;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Índice en memoria de código de barras a datos de escaneo (precio, stock, borrado).
+ * Las consultas nunca usan conexiones de la base de datos.
+ * ArticuloService lo mantiene al día: tras confirmar cada escritura se releen las filas afectadas.
+ * Como se carga entero al arrancar y los artículos no se borran ni cambian de código, un código
+ * que no está en el índice no existe.
+ */
+@Component
+public class IndiceCodigoBarras {
+
+    private static final int NUM_CERROJOS = 64;
+
+    private final Map<String, ArticuloEscaneo> porCodigo = new ConcurrentHashMap<>();
+
+    // Las recargas de un mismo artículo se serializan para que una lectura antigua
+    // nunca sobrescriba a otra más reciente. Las consultas no toman ningún cerrojo
+    private final ReentrantLock[] cerrojos = new ReentrantLock[NUM_CERROJOS];
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    public IndiceCodigoBarras() {
+        for (int i = 0; i < NUM_CERROJOS; i++) {
+            cerrojos[i] = new ReentrantLock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        // Con todos los cerrojos, para que la carga no pise una recarga simultánea más reciente
+        for (ReentrantLock cerrojo : cerrojos) {
+            cerrojo.lock();
+        }
+        try {
+            for (ArticuloEscaneo articulo : articuloRepository.findResumenesEscaneo()) {
+                porCodigo.put(articulo.codigoBarras(), articulo);
+            }
+        } finally {
+            for (int i = NUM_CERROJOS - 1; i >= 0; i--) {
+                cerrojos[i].unlock();
+            }
+        }
+    }
+
+    // Los códigos mal leídos por el escáner no llegan a la base de datos
+    public Optional<ArticuloEscaneo> buscar(String codigoBarras) {
+        return Optional.ofNullable(porCodigo.get(codigoBarras));
+    }
+
+    // Se ejecuta tras el commit, todavía con la conexión de la transacción que publicó el evento:
+    // las consultas la reutilizan en lugar de pedir otra al pool, que con muchas escrituras
+    // simultáneas podría agotarse con todos los hilos esperando una segunda conexión
+    @TransactionalEventListener
+    public void alModificarArticulos(ArticulosModificadosEvent evento) {
+        // Se bloquean los cerrojos en orden creciente para evitar interbloqueos entre recargas
+        TreeSet<Integer> indices = new TreeSet<>();
+        for (Long id : evento.ids()) {
+            indices.add(Math.floorMod(id.hashCode(), NUM_CERROJOS));
+        }
+        for (Integer indice : indices) {
+            cerrojos[indice].lock();
+        }
+        try {
+            for (ArticuloEscaneo articulo : articuloRepository.findResumenesEscaneoPorIds(evento.ids())) {
+                porCodigo.put(articulo.codigoBarras(), articulo);
+            }
+        } finally {
+            for (Integer indice : indices.descendingSet()) {
+                cerrojos[indice].unlock();
+            }
+        }
+    }
+}
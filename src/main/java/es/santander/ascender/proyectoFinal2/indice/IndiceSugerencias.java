@@ -0,0 +1,124 @@
+package es.santander.ascender.proyectoFinal2.indice;
+
+import es.santander.ascender.proyectoFinal2.dto.ArticuloTexto;
+import es.santander.ascender.proyectoFinal2.dto.Sugerencia;
+import es.santander.ascender.proyectoFinal2.event.ArticulosModificadosEvent;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Índice ordenado para el autocompletado por prefijo de nombre y de código de barras.
+ * Cada consulta es un recorrido por rango sobre mapas ordenados y concurrentes:
+ * no toma cerrojos, no usa JPA y sólo reserva la lista de resultados.
+ */
+@Component
+public class IndiceSugerencias {
+
+    // Separa el nombre del ID en la clave para que dos artículos con el mismo nombre no colisionen
+    private static final char SEPARADOR = '\u0000';
+    private static final char FIN_RANGO = '\uffff';
+
+    private final ConcurrentSkipListMap<String, Sugerencia> porNombre = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, Sugerencia> porCodigo = new ConcurrentSkipListMap<>();
+    private final Map<Long, Sugerencia> porId = new ConcurrentHashMap<>();
+
+    // Sólo serializa las escrituras entre sí (lectura de la base de datos incluida, para que una
+    // lectura antigua nunca se aplique después de otra más reciente); las consultas nunca esperan
+    private final ReentrantLock cerrojoEscritura = new ReentrantLock();
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        actualizar(articuloRepository::findTextosActivos);
+    }
+
+    @TransactionalEventListener(condition = "#evento.cambiaDatosCatalogo()")
+    public void alModificarArticulos(ArticulosModificadosEvent evento) {
+        actualizar(() -> articuloRepository.findTextosPorIds(evento.ids()));
+    }
+
+    /**
+     * Devuelve hasta 'limite' artículos cuyo nombre empieza por el prefijo (en orden alfabético)
+     * seguidos de los que tienen un código de barras que empieza por él.
+     */
+    public List<Sugerencia> buscar(String prefijo, int limite) {
+        List<Sugerencia> sugerencias = new ArrayList<>(limite);
+        if (prefijo == null || prefijo.isBlank()) {
+            return sugerencias;
+        }
+        // Los espacios finales se respetan: "pan " no sugiere "Panceta"
+        anadirRango(porNombre, normalizar(prefijo).stripLeading(), sugerencias, limite);
+        anadirRango(porCodigo, prefijo.trim(), sugerencias, limite);
+        return sugerencias;
+    }
+
+    private static void anadirRango(NavigableMap<String, Sugerencia> mapa, String prefijo,
+            List<Sugerencia> sugerencias, int limite) {
+        if (sugerencias.size() >= limite) {
+            return;
+        }
+        for (Sugerencia sugerencia : mapa.subMap(prefijo, true, prefijo + FIN_RANGO, false).values()) {
+            if (!contiene(sugerencias, sugerencia.id())) {
+                sugerencias.add(sugerencia);
+                if (sugerencias.size() >= limite) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // La lista tiene como mucho 'limite' elementos: una búsqueda lineal es más barata que un Set
+    private static boolean contiene(List<Sugerencia> sugerencias, Long id) {
+        for (Sugerencia sugerencia : sugerencias) {
+            if (sugerencia.id().equals(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void actualizar(Supplier<List<ArticuloTexto>> lectura) {
+        cerrojoEscritura.lock();
+        try {
+            for (ArticuloTexto articulo : lectura.get()) {
+                Sugerencia anterior = porId.remove(articulo.id());
+                if (anterior != null) {
+                    porNombre.remove(claveNombre(anterior));
+                    porCodigo.remove(anterior.codigoBarras());
+                }
+                if (!articulo.borrado()) {
+                    Sugerencia sugerencia = new Sugerencia(articulo.id(), articulo.nombre(), articulo.codigoBarras());
+                    porId.put(sugerencia.id(), sugerencia);
+                    porNombre.put(claveNombre(sugerencia), sugerencia);
+                    porCodigo.put(sugerencia.codigoBarras(), sugerencia);
+                }
+            }
+        } finally {
+            cerrojoEscritura.unlock();
+        }
+    }
+
+    private static String claveNombre(Sugerencia sugerencia) {
+        return normalizar(sugerencia.nombre()) + SEPARADOR + sugerencia.id();
+    }
+
+    private static String normalizar(String texto) {
+        return texto == null ? "" : texto.toLowerCase(Locale.ROOT);
+    }
+}
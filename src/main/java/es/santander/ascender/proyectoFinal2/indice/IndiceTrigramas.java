@@ -0,0 +1,285 @@
+package es.santander.ascender.proyectoFinal2.indice;
+
+import es.santander.ascender.proyectoFinal2.dto.ArticuloTexto;
+import es.santander.ascender.proyectoFinal2.event.ArticulosModificadosEvent;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice de trigramas sobre el nombre y la descripción de los artículos no borrados.
+ * Una búsqueda de subcadena intersecta las listas de los trigramas de la consulta y
+ * sólo comprueba el texto de los candidatos, en lugar de recorrer toda la tabla con LIKE '%x%'.
+ * También se indexan las subcadenas de una y dos letras, para que las primeras pulsaciones
+ * de una búsqueda incremental no tengan que recorrer todos los documentos.
+ */
+@Component
+public class IndiceTrigramas {
+
+    private static final int N = 3;
+
+    // Orden de relevancia: primero coincidencias al principio del nombre, después en el
+    // inicio de una palabra del nombre, en cualquier parte del nombre y por último en la descripción
+    private static final int EN_INICIO_NOMBRE = 0;
+    private static final int EN_PALABRA_NOMBRE = 1;
+    private static final int EN_NOMBRE = 2;
+    private static final int EN_DESCRIPCION = 3;
+
+    private record Documento(String nombre, String descripcion) {
+    }
+
+    private record Coincidencia(long id, int rango, int longitudNombre) {
+    }
+
+    private final Map<Long, Documento> documentos = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final ReadWriteLock cerrojo = new ReentrantReadWriteLock();
+
+    // Las recargas (lectura de la base de datos y actualización del índice) se serializan para que
+    // una lectura antigua nunca se aplique después de otra más reciente. Las búsquedas no lo toman
+    private final ReentrantLock recargas = new ReentrantLock();
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void cargar() {
+        recargas.lock();
+        try {
+            List<ArticuloTexto> articulos = articuloRepository.findTextosActivos();
+            cerrojo.writeLock().lock();
+            try {
+                for (ArticuloTexto articulo : articulos) {
+                    indexar(articulo);
+                }
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        } finally {
+            recargas.unlock();
+        }
+    }
+
+    @TransactionalEventListener(condition = "#evento.cambiaDatosCatalogo()")
+    public void alModificarArticulos(ArticulosModificadosEvent evento) {
+        recargas.lock();
+        try {
+            List<ArticuloTexto> articulos = articuloRepository.findTextosPorIds(evento.ids());
+            cerrojo.writeLock().lock();
+            try {
+                for (ArticuloTexto articulo : articulos) {
+                    eliminar(articulo.id());
+                    if (!articulo.borrado()) {
+                        indexar(articulo);
+                    }
+                }
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        } finally {
+            recargas.unlock();
+        }
+    }
+
+    /**
+     * Devuelve los IDs de los artículos cuyo nombre (o descripción, si soloNombre es false)
+     * contiene la consulta, sin distinguir mayúsculas, ordenados por relevancia. Una consulta
+     * vacía o de sólo espacios no devuelve ningún artículo.
+     */
+    public List<Long> buscar(String consulta, boolean soloNombre) {
+        String texto = normalizar(consulta);
+        if (texto.isEmpty()) {
+            return List.of();
+        }
+
+        List<Coincidencia> coincidencias = new ArrayList<>();
+        cerrojo.readLock().lock();
+        try {
+            for (long id : candidatos(texto)) {
+                anadirSiCoincide(coincidencias, id, documentos.get(id), texto, soloNombre);
+            }
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+
+        coincidencias.sort(Comparator.comparingInt(Coincidencia::rango)
+                .thenComparingInt(Coincidencia::longitudNombre)
+                .thenComparingLong(Coincidencia::id));
+        List<Long> ids = new ArrayList<>(coincidencias.size());
+        for (Coincidencia coincidencia : coincidencias) {
+            ids.add(coincidencia.id());
+        }
+        return ids;
+    }
+
+    // Intersección de las listas de todos los trigramas de la consulta, empezando por la más corta.
+    // Una consulta de una o dos letras tiene su propia lista
+    private long[] candidatos(String texto) {
+        if (texto.length() < N) {
+            Postings lista = postings.get(texto);
+            return lista == null ? new long[0] : Arrays.copyOf(lista.ids, lista.tamano);
+        }
+        Set<String> trigramas = trigramas(texto);
+        List<Postings> listas = new ArrayList<>(trigramas.size());
+        for (String trigrama : trigramas) {
+            Postings lista = postings.get(trigrama);
+            if (lista == null) {
+                return new long[0];
+            }
+            listas.add(lista);
+        }
+        listas.sort(Comparator.comparingInt(Postings::tamano));
+
+        long[] resultado = Arrays.copyOf(listas.get(0).ids, listas.get(0).tamano);
+        for (int i = 1; i < listas.size() && resultado.length > 0; i++) {
+            resultado = listas.get(i).intersectar(resultado);
+        }
+        return resultado;
+    }
+
+    private static void anadirSiCoincide(List<Coincidencia> coincidencias, long id, Documento documento,
+            String texto, boolean soloNombre) {
+        int posicion = documento.nombre().indexOf(texto);
+        int rango;
+        if (posicion == 0) {
+            rango = EN_INICIO_NOMBRE;
+        } else if (posicion > 0) {
+            rango = Character.isLetterOrDigit(documento.nombre().charAt(posicion - 1)) ? EN_NOMBRE : EN_PALABRA_NOMBRE;
+        } else if (!soloNombre && documento.descripcion().contains(texto)) {
+            rango = EN_DESCRIPCION;
+        } else {
+            // Falso positivo: contiene todos los trigramas pero no la subcadena completa
+            return;
+        }
+        coincidencias.add(new Coincidencia(id, rango, documento.nombre().length()));
+    }
+
+    // Debe llamarse con el cerrojo de escritura
+    private void indexar(ArticuloTexto articulo) {
+        Documento documento = new Documento(normalizar(articulo.nombre()), normalizar(articulo.descripcion()));
+        documentos.put(articulo.id(), documento);
+        for (String grama : gramas(documento)) {
+            postings.computeIfAbsent(grama, t -> new Postings()).anadir(articulo.id());
+        }
+    }
+
+    // Debe llamarse con el cerrojo de escritura
+    private void eliminar(Long id) {
+        Documento documento = documentos.remove(id);
+        if (documento == null) {
+            return;
+        }
+        for (String grama : gramas(documento)) {
+            Postings lista = postings.get(grama);
+            if (lista != null && lista.eliminar(id) && lista.tamano == 0) {
+                postings.remove(grama);
+            }
+        }
+    }
+
+    // Subcadenas de una, dos y tres letras del documento: las claves de sus listas
+    private static Set<String> gramas(Documento documento) {
+        Set<String> gramas = new HashSet<>();
+        for (String texto : List.of(documento.nombre(), documento.descripcion())) {
+            for (int i = 0; i < texto.length(); i++) {
+                for (int n = 1; n <= N && i + n <= texto.length(); n++) {
+                    gramas.add(texto.substring(i, i + n));
+                }
+            }
+        }
+        return gramas;
+    }
+
+    private static Set<String> trigramas(String texto) {
+        Set<String> trigramas = new HashSet<>();
+        for (int i = 0; i + N <= texto.length(); i++) {
+            trigramas.add(texto.substring(i, i + N));
+        }
+        return trigramas;
+    }
+
+    private static String normalizar(String texto) {
+        return texto == null ? "" : texto.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Lista ordenada de IDs de un trigrama, guardada en un array de long
+     * para no pagar un objeto Long por cada aparición.
+     */
+    private static final class Postings {
+
+        private long[] ids = new long[4];
+        private int tamano;
+
+        int tamano() {
+            return tamano;
+        }
+
+        void anadir(long id) {
+            // Caso habitual en la carga inicial, que recorre los artículos por ID creciente
+            if (tamano == 0 || id > ids[tamano - 1]) {
+                if (tamano == ids.length) {
+                    ids = Arrays.copyOf(ids, tamano * 2);
+                }
+                ids[tamano++] = id;
+                return;
+            }
+            int posicion = Arrays.binarySearch(ids, 0, tamano, id);
+            if (posicion >= 0) {
+                return;
+            }
+            int insercion = -posicion - 1;
+            if (tamano == ids.length) {
+                ids = Arrays.copyOf(ids, tamano * 2);
+            }
+            System.arraycopy(ids, insercion, ids, insercion + 1, tamano - insercion);
+            ids[insercion] = id;
+            tamano++;
+        }
+
+        boolean eliminar(long id) {
+            int posicion = Arrays.binarySearch(ids, 0, tamano, id);
+            if (posicion < 0) {
+                return false;
+            }
+            System.arraycopy(ids, posicion + 1, ids, posicion, tamano - posicion - 1);
+            tamano--;
+            return true;
+        }
+
+        long[] intersectar(long[] otros) {
+            long[] resultado = new long[Math.min(otros.length, tamano)];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < otros.length && j < tamano) {
+                if (otros[i] < ids[j]) {
+                    i++;
+                } else if (otros[i] > ids[j]) {
+                    j++;
+                } else {
+                    resultado[k++] = otros[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(resultado, k);
+        }
+    }
+}
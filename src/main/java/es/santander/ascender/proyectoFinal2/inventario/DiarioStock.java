@@ -0,0 +1,144 @@
+package es.santander.ascender.proyectoFinal2.inventario;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Diario de sólo escritura con los cambios de stock confirmados en memoria y aún no volcados.
+ * Se divide en segmentos numerados: al volcar se cierra el segmento actual y se abre el siguiente,
+ * y una vez aplicado en la base de datos el segmento cerrado se borra.
+ *
+ * Cada anotación es un bloque: int número de cambios, n × (long id, int cantidad) e int CRC32 del bloque.
+ * Al leer, un bloque incompleto o con CRC erróneo (escritura cortada por una caída) marca el final del segmento.
+ *
+ * No es seguro para varios hilos: MotorStockMemoria lo usa siempre con su cerrojo.
+ */
+class DiarioStock implements Closeable {
+
+    private static final String PREFIJO = "segmento-";
+    private static final String EXTENSION = ".log";
+    private static final int TAMANO_CAMBIO = Long.BYTES + Integer.BYTES;
+
+    private final Path directorio;
+    private final boolean sincronizar;
+
+    private FileChannel canal;
+    private long segmento;
+
+    DiarioStock(Path directorio, boolean sincronizar) throws IOException {
+        this.directorio = directorio;
+        this.sincronizar = sincronizar;
+        Files.createDirectories(directorio);
+    }
+
+    long segmentoActual() {
+        return segmento;
+    }
+
+    // Números de los segmentos que hay en el directorio, de menor a mayor
+    List<Long> segmentos() throws IOException {
+        List<Long> numeros = new ArrayList<>();
+        try (DirectoryStream<Path> ficheros = Files.newDirectoryStream(directorio, PREFIJO + "*" + EXTENSION)) {
+            for (Path fichero : ficheros) {
+                String nombre = fichero.getFileName().toString();
+                try {
+                    numeros.add(Long.parseLong(nombre.substring(PREFIJO.length(), nombre.length() - EXTENSION.length())));
+                } catch (NumberFormatException e) {
+                    // Fichero ajeno al diario
+                }
+            }
+        }
+        Collections.sort(numeros);
+        return numeros;
+    }
+
+    void abrir(long numero) throws IOException {
+        close();
+        canal = FileChannel.open(fichero(numero), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        segmento = numero;
+    }
+
+    void anotar(Map<Long, Integer> cambios) throws IOException {
+        ByteBuffer bloque = ByteBuffer.allocate(Integer.BYTES + cambios.size() * TAMANO_CAMBIO + Integer.BYTES);
+        bloque.putInt(cambios.size());
+        for (Map.Entry<Long, Integer> cambio : cambios.entrySet()) {
+            bloque.putLong(cambio.getKey());
+            bloque.putInt(cambio.getValue());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bloque.array(), 0, bloque.position());
+        bloque.putInt((int) crc.getValue());
+        bloque.flip();
+        while (bloque.hasRemaining()) {
+            canal.write(bloque);
+        }
+        if (sincronizar) {
+            canal.force(false);
+        }
+    }
+
+    // Cierra el segmento actual y abre el siguiente; devuelve el número del cerrado
+    long rotar() throws IOException {
+        long cerrado = segmento;
+        canal.force(false);
+        abrir(cerrado + 1);
+        return cerrado;
+    }
+
+    // Suma neta por artículo de todas las anotaciones íntegras del segmento
+    Map<Long, Long> leer(long numero) throws IOException {
+        Map<Long, Long> netos = new HashMap<>();
+        ByteBuffer contenido = ByteBuffer.wrap(Files.readAllBytes(fichero(numero)));
+        while (contenido.remaining() >= Integer.BYTES) {
+            int inicio = contenido.position();
+            int numeroCambios = contenido.getInt();
+            if (numeroCambios < 0 || contenido.remaining() < (long) numeroCambios * TAMANO_CAMBIO + Integer.BYTES) {
+                break;
+            }
+            Map<Long, Integer> cambios = new HashMap<>();
+            for (int i = 0; i < numeroCambios; i++) {
+                cambios.merge(contenido.getLong(), contenido.getInt(), Integer::sum);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(contenido.array(), inicio, contenido.position() - inicio);
+            if (contenido.getInt() != (int) crc.getValue()) {
+                break;
+            }
+            cambios.forEach((id, cantidad) -> netos.merge(id, (long) cantidad, Long::sum));
+        }
+        return netos;
+    }
+
+    void borrarHasta(long numero) throws IOException {
+        for (long existente : segmentos()) {
+            if (existente <= numero && existente != segmento) {
+                Files.deleteIfExists(fichero(existente));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (canal != null) {
+            canal.close();
+            canal = null;
+        }
+    }
+
+    private Path fichero(long numero) {
+        return directorio.resolve(PREFIJO + numero + EXTENSION);
+    }
+}
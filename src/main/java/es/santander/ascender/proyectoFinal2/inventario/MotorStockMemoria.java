@@ -0,0 +1,331 @@
+package es.santander.ascender.proyectoFinal2.inventario;
+
+import es.santander.ascender.proyectoFinal2.event.ArticulosModificadosEvent;
+import es.santander.ascender.proyectoFinal2.event.ArticulosModificadosEvent.TipoCambio;
+import es.santander.ascender.proyectoFinal2.model.EstadoMotorStock;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import es.santander.ascender.proyectoFinal2.repository.EstadoMotorStockRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Motor de stock en memoria para artículos con mucha venta simultánea (se activa con
+ * inventario.stock.motor=memoria). El stock disponible de cada artículo es un contador atómico:
+ * las ventas lo reservan con compare-and-set sin tocar la fila del artículo, y los cambios netos
+ * se vuelcan a la tabla articulo periódicamente en un único lote.
+ *
+ * Durabilidad: al confirmar cada transacción sus cambios se anotan en un diario (DiarioStock) antes del commit.
+ * Al arrancar se aplican los segmentos del diario posteriores al último volcado registrado en
+ * EstadoMotorStock. Si el proceso cae entre la anotación y el commit, la recuperación descuenta
+ * unidades de una venta que no llegó a confirmarse: el error es siempre por defecto, nunca vende de más.
+ *
+ * Mientras está activo, el stock de la tabla articulo va por detrás como mucho un intervalo de volcado.
+ */
+@Component
+@ConditionalOnProperty(name = "inventario.stock.motor", havingValue = "memoria")
+@DependsOn("entityManagerFactory")
+public class MotorStockMemoria {
+
+    private static final Logger log = LoggerFactory.getLogger(MotorStockMemoria.class);
+
+    private final Map<Long, AtomicInteger> disponible = new ConcurrentHashMap<>();
+
+    // Protege el diario y los cambios pendientes de volcar, que siempre corresponden
+    // exactamente a lo anotado en el segmento abierto
+    private final ReentrantLock cerrojo = new ReentrantLock();
+    private Map<Long, Long> pendientes = new HashMap<>();
+    private DiarioStock diario;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @Autowired
+    private EstadoMotorStockRepository estadoRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    // Ruta absoluta y persistente: con una relativa el diario dependería del directorio de arranque
+    @Value("${inventario.stock.diario.directorio:${user.home}/.proyectoFinal2/diario-stock}")
+    private Path directorio;
+
+    @Value("${inventario.stock.diario.sincronizar:true}")
+    private boolean sincronizar;
+
+    /**
+     * Aplica en la base de datos todo lo anotado y no volcado, y empieza con el estado de la tabla.
+     * Se ejecuta al arrancar, antes de aceptar ventas.
+     *
+     * Mientras el motor funciona siempre existe el segmento siguiente al último volcado. Si la base de
+     * datos indica que ya se ha volcado alguno y ese segmento no está, el diario no es el de la ejecución
+     * anterior (otro directorio, ficheros borrados): se detiene el arranque en lugar de perder cambios.
+     */
+    @PostConstruct
+    void recuperar() throws IOException {
+        if (!directorio.isAbsolute()) {
+            throw new IllegalStateException(
+                    "inventario.stock.diario.directorio debe ser una ruta absoluta: " + directorio);
+        }
+        cerrojo.lock();
+        try {
+            if (diario == null) {
+                diario = new DiarioStock(directorio, sincronizar);
+            }
+            diario.close();
+            long aplicado = estado().getUltimoSegmentoAplicado();
+            if (aplicado > 0 && diario.segmentos().stream().noneMatch(segmento -> segmento > aplicado)) {
+                throw new IllegalStateException("No se encuentra el diario de stock en " + directorio
+                        + ": la base de datos tiene volcados los segmentos hasta el " + aplicado
+                        + " pero no está el siguiente. Revise inventario.stock.diario.directorio");
+            }
+            Map<Long, Long> netos = new HashMap<>();
+            long ultimo = aplicado;
+            for (long segmento : diario.segmentos()) {
+                if (segmento > aplicado) {
+                    diario.leer(segmento).forEach((id, cantidad) -> netos.merge(id, cantidad, Long::sum));
+                    ultimo = segmento;
+                }
+            }
+            if (ultimo > aplicado) {
+                volcarEnBaseDeDatos(netos, ultimo);
+                log.info("Recuperados del diario de stock los segmentos {} a {} ({} artículos)",
+                        aplicado + 1, ultimo, netos.size());
+            }
+            diario.abrir(ultimo + 1);
+            diario.borrarHasta(ultimo);
+            pendientes = new HashMap<>();
+            // Los contadores se cargan de nuevo desde la tabla, que ya está al día
+            disponible.clear();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    public Optional<Integer> disponible(Long id) {
+        AtomicInteger contador = contador(id);
+        return contador == null ? Optional.empty() : Optional.of(contador.get());
+    }
+
+    /**
+     * Reserva o devuelve stock (id -> cantidad) de forma atómica para todos los artículos: si alguno
+     * no existe o quedaría por debajo de su mínimo no se aplica ninguno y se devuelven sus IDs.
+     * El mínimo de los descuentos se vuelve a comprobar después de aplicarlos, por si ha subido
+     * entretanto (reservas nuevas). Debe llamarse dentro de la transacción de la operación: si ésta
+     * se deshace, el cambio también.
+     */
+    public List<Long> aplicar(Map<Long, Integer> cantidades, Function<Long, Integer> minimo) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("El motor de stock en memoria sólo puede usarse dentro de una transacción");
+        }
+        Map<Long, Integer> ordenadas = new TreeMap<>(cantidades);
+        Map<Long, Integer> aplicadas = new HashMap<>();
+        List<Long> rechazados = new ArrayList<>();
+        for (Map.Entry<Long, Integer> cambio : ordenadas.entrySet()) {
+            AtomicInteger contador = contador(cambio.getKey());
+            if (contador != null && reservar(contador, cambio.getValue(), minimo.apply(cambio.getKey()))) {
+                aplicadas.put(cambio.getKey(), cambio.getValue());
+            } else {
+                rechazados.add(cambio.getKey());
+            }
+        }
+        if (rechazados.isEmpty()) {
+            aplicadas.forEach((id, cantidad) -> {
+                if (cantidad < 0 && disponible.get(id).get() < minimo.apply(id)) {
+                    rechazados.add(id);
+                }
+            });
+        }
+        if (!rechazados.isEmpty()) {
+            deshacer(aplicadas);
+            return rechazados;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new Anotacion(ordenadas));
+        return List.of();
+    }
+
+    @Scheduled(fixedDelayString = "${inventario.stock.intervalo-volcado:PT1S}")
+    public void volcar() {
+        long segmento;
+        Map<Long, Long> netos;
+        cerrojo.lock();
+        try {
+            if (pendientes.isEmpty()) {
+                return;
+            }
+            segmento = diario.rotar();
+            netos = pendientes;
+            pendientes = new HashMap<>();
+        } catch (IOException e) {
+            log.error("No se ha podido rotar el diario de stock", e);
+            return;
+        } finally {
+            cerrojo.unlock();
+        }
+
+        try {
+            volcarEnBaseDeDatos(netos, segmento);
+        } catch (RuntimeException e) {
+            // El segmento sigue en disco; los cambios pasan al siguiente volcado, que lo cubrirá también
+            log.error("No se ha podido volcar el stock en la base de datos, se reintentará", e);
+            cerrojo.lock();
+            try {
+                netos.forEach((id, cantidad) -> pendientes.merge(id, cantidad, Long::sum));
+            } finally {
+                cerrojo.unlock();
+            }
+            return;
+        }
+
+        cerrojo.lock();
+        try {
+            diario.borrarHasta(segmento);
+        } catch (IOException e) {
+            log.warn("No se han podido borrar los segmentos ya volcados del diario de stock", e);
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    @PreDestroy
+    void detener() throws IOException {
+        volcar();
+        cerrojo.lock();
+        try {
+            diario.close();
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    private void volcarEnBaseDeDatos(Map<Long, Long> netos, long segmento) {
+        transactionTemplate.executeWithoutResult(estadoTransaccion -> {
+            Map<Long, Integer> cambios = new TreeMap<>();
+            netos.forEach((id, cantidad) -> {
+                if (cantidad != 0) {
+                    cambios.put(id, Math.toIntExact(cantidad));
+                }
+            });
+            List<Long> rechazados = articuloRepository.ajustarStockEnLote(cambios);
+            if (!rechazados.isEmpty()) {
+                // Sólo ocurre si alguien ha modificado el stock de la tabla sin pasar por el motor
+                log.warn("Cambios de stock no aplicados al volcar por dejar el stock negativo: {}", rechazados);
+            }
+            EstadoMotorStock estado = estado();
+            estado.setUltimoSegmentoAplicado(segmento);
+            estadoRepository.save(estado);
+            if (!cambios.isEmpty()) {
+                eventPublisher.publishEvent(ArticulosModificadosEvent.de(cambios.keySet(), TipoCambio.STOCK));
+            }
+        });
+    }
+
+    private EstadoMotorStock estado() {
+        return estadoRepository.findById(EstadoMotorStock.ID).orElseGet(() -> new EstadoMotorStock(EstadoMotorStock.ID, 0L));
+    }
+
+    // Un artículo sin contador no tiene cambios en memoria, así que su stock en la tabla es exacto
+    private AtomicInteger contador(Long id) {
+        AtomicInteger contador = disponible.get(id);
+        if (contador != null) {
+            return contador;
+        }
+        Optional<Integer> stock = articuloRepository.findStockById(id);
+        return stock.map(s -> disponible.computeIfAbsent(id, k -> new AtomicInteger(s))).orElse(null);
+    }
+
+    private static boolean reservar(AtomicInteger contador, int cantidad, int minimo) {
+        while (true) {
+            int actual = contador.get();
+            if (actual + cantidad < minimo) {
+                return false;
+            }
+            if (contador.compareAndSet(actual, actual + cantidad)) {
+                return true;
+            }
+        }
+    }
+
+    private void deshacer(Map<Long, Integer> cambios) {
+        cambios.forEach((id, cantidad) -> disponible.get(id).addAndGet(-cantidad));
+    }
+
+    private void anotar(Map<Long, Integer> cambios) throws IOException {
+        cerrojo.lock();
+        try {
+            diario.anotar(cambios);
+            cambios.forEach((id, cantidad) -> pendientes.merge(id, (long) cantidad, Long::sum));
+        } finally {
+            cerrojo.unlock();
+        }
+    }
+
+    /**
+     * Anota los cambios justo antes del commit. Si la transacción acaba deshaciéndose
+     * se devuelven a los contadores y, si ya estaban anotados, se anota la compensación.
+     */
+    private final class Anotacion implements TransactionSynchronization {
+
+        private final Map<Long, Integer> cambios;
+        private boolean anotada;
+
+        Anotacion(Map<Long, Integer> cambios) {
+            this.cambios = cambios;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            try {
+                anotar(cambios);
+                anotada = true;
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se ha podido anotar el cambio de stock en el diario", e);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status == STATUS_COMMITTED) {
+                return;
+            }
+            deshacer(cambios);
+            if (anotada) {
+                Map<Long, Integer> compensacion = new TreeMap<>();
+                cambios.forEach((id, cantidad) -> compensacion.put(id, -cantidad));
+                try {
+                    anotar(compensacion);
+                } catch (IOException e) {
+                    log.error("No se ha podido anotar la compensación de una transacción deshecha: {}", compensacion, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package es.santander.ascender.proyectoFinal2.inventario;
+
+import es.santander.ascender.proyectoFinal2.dto.Reserva;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Registro en memoria de las reservas temporales de stock y de las unidades retenidas por artículo.
+ * El stock disponible de un artículo es su stock menos lo retenido, y consultar lo retenido es
+ * una lectura de un contador, sin recorrer las reservas.
+ *
+ * Las caducidades se guardan en una DelayQueue que consume un único hilo de barrido: sólo se
+ * despierta cuando vence la próxima reserva. Las reservas no se persisten: tras un reinicio
+ * desaparecen y el stock retenido vuelve a estar disponible.
+ */
+@Component
+public class RetencionesStock {
+
+    private static final Logger log = LoggerFactory.getLogger(RetencionesStock.class);
+
+    private static final int NUM_CERROJOS = 64;
+
+    private final Map<String, Reserva> reservas = new ConcurrentHashMap<>();
+    private final Map<String, Reserva> enConfirmacion = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> retenido = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> enComprobacion = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> confirmandose = new ConcurrentHashMap<>();
+    private final DelayQueue<Caducidad> caducidades = new DelayQueue<>();
+
+    // Las reservas de un mismo artículo se comprueban y retienen de una en una
+    private final ReentrantLock[] cerrojos = new ReentrantLock[NUM_CERROJOS];
+
+    private Thread barrido;
+
+    public RetencionesStock() {
+        for (int i = 0; i < NUM_CERROJOS; i++) {
+            cerrojos[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    void iniciar() {
+        barrido = new Thread(this::barrer, "barrido-reservas");
+        barrido.setDaemon(true);
+        barrido.start();
+    }
+
+    @PreDestroy
+    void detener() {
+        barrido.interrupt();
+    }
+
+    // Unidades retenidas, incluidas las de reservas que aún se están comprobando
+    public int retenido(Long articuloId) {
+        return valor(retenido, articuloId) + valor(enComprobacion, articuloId);
+    }
+
+    /**
+     * Unidades retenidas que no puede tocar la venta que confirma una reserva: las de las reservas
+     * registradas que no se están confirmando. Cada confirmación vende exactamente lo que retiene,
+     * así que las confirmaciones simultáneas no se quitan unidades entre sí.
+     */
+    public int retenidoSinConfirmar(Long articuloId) {
+        return Math.max(0, valor(retenido, articuloId) - valor(confirmandose, articuloId));
+    }
+
+    public Optional<Reserva> buscar(String id) {
+        return Optional.ofNullable(reservas.get(id));
+    }
+
+    /**
+     * Registra la reserva si para todos sus artículos el stock (sin descontar reservas) alcanza para
+     * lo retenido, incluida ella. Devuelve los IDs sin stock suficiente; si hay alguno no retiene nada.
+     *
+     * Las unidades cuentan como retenidas (en comprobación) antes de leer el stock, y los descuentos
+     * vuelven a mirar lo retenido después de aplicarse (CoordinadorStock): así una venta simultánea
+     * o ve esta reserva, o ya ha descontado cuando se lee el stock. leerStock debe devolver el stock
+     * actual, esperando a las ventas en curso.
+     */
+    public List<Long> retener(Reserva reserva, Function<Set<Long>, Map<Long, Integer>> leerStock) {
+        TreeSet<Integer> indices = new TreeSet<>();
+        for (Long id : reserva.lineas().keySet()) {
+            indices.add(Math.floorMod(id.hashCode(), NUM_CERROJOS));
+        }
+        // Se bloquean en orden creciente para evitar interbloqueos entre reservas. Las ventas
+        // no toman estos cerrojos, así que esperar aquí a sus bloqueos de fila no puede interbloquear
+        for (Integer indice : indices) {
+            cerrojos[indice].lock();
+        }
+        try {
+            sumar(enComprobacion, reserva, 1);
+            List<Long> insuficientes = new ArrayList<>();
+            try {
+                Map<Long, Integer> stock = leerStock.apply(reserva.lineas().keySet());
+                // Con el cerrojo, lo que está en comprobación en estos artículos es sólo de esta reserva
+                reserva.lineas().forEach((id, cantidad) -> {
+                    if (stock.getOrDefault(id, 0) < valor(retenido, id) + cantidad) {
+                        insuficientes.add(id);
+                    }
+                });
+                if (insuficientes.isEmpty()) {
+                    sumar(retenido, reserva, 1);
+                    registrar(reserva);
+                }
+            } finally {
+                sumar(enComprobacion, reserva, -1);
+            }
+            return insuficientes;
+        } finally {
+            for (Integer indice : indices.descendingSet()) {
+                cerrojos[indice].unlock();
+            }
+        }
+    }
+
+    /**
+     * Retira la reserva para confirmarla sin liberar sus unidades: mientras se confirma no caduca
+     * ni se puede liberar, y sus unidades siguen sin estar al alcance de otras ventas.
+     */
+    public Optional<Reserva> reclamar(String id) {
+        Reserva reserva = reservas.remove(id);
+        if (reserva != null) {
+            enConfirmacion.put(id, reserva);
+            sumar(confirmandose, reserva, 1);
+        }
+        return Optional.ofNullable(reserva);
+    }
+
+    // Libera las unidades de una reserva reclamada una vez confirmada su venta
+    public void finalizar(Reserva reserva) {
+        if (enConfirmacion.remove(reserva.id()) != null) {
+            sumar(retenido, reserva, -1);
+            sumar(confirmandose, reserva, -1);
+        }
+    }
+
+    // Devuelve una reserva reclamada cuya confirmación ha fallado; si ya ha caducado, la libera
+    public void devolver(Reserva reserva) {
+        if (enConfirmacion.remove(reserva.id()) == null) {
+            return;
+        }
+        sumar(confirmandose, reserva, -1);
+        if (reserva.caducidad().isAfter(Instant.now())) {
+            reservas.put(reserva.id(), reserva);
+            caducidades.put(new Caducidad(reserva.id(), reserva.caducidad()));
+        } else {
+            sumar(retenido, reserva, -1);
+        }
+    }
+
+    /**
+     * Retira la reserva y libera sus unidades. Sólo uno de los llamantes simultáneos
+     * (liberar, confirmar o el barrido) la obtiene.
+     */
+    public Optional<Reserva> quitar(String id) {
+        Reserva reserva = reservas.remove(id);
+        if (reserva == null) {
+            return Optional.empty();
+        }
+        sumar(retenido, reserva, -1);
+        return Optional.of(reserva);
+    }
+
+    private static void sumar(Map<Long, AtomicInteger> contadores, Reserva reserva, int signo) {
+        reserva.lineas().forEach((id, cantidad) ->
+                contadores.computeIfAbsent(id, k -> new AtomicInteger()).addAndGet(signo * cantidad));
+    }
+
+    private static int valor(Map<Long, AtomicInteger> contadores, Long articuloId) {
+        AtomicInteger cantidad = contadores.get(articuloId);
+        return cantidad == null ? 0 : cantidad.get();
+    }
+
+    // Las unidades ya están sumadas a lo retenido
+    private void registrar(Reserva reserva) {
+        reservas.put(reserva.id(), reserva);
+        caducidades.put(new Caducidad(reserva.id(), reserva.caducidad()));
+    }
+
+    private void barrer() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // Si la reserva ya no está (confirmada, liberada o ya caducada por otra entrada
+                // de la cola tras devolverla) no se hace nada
+                quitar(caducidades.take().reservaId()).ifPresent(r -> log.debug("Reserva caducada: {}", r.id()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private record Caducidad(String reservaId, Instant instante) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unidad) {
+            return unidad.convert(Duration.between(Instant.now(), instante));
+        }
+
+        @Override
+        public int compareTo(Delayed otra) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), otra.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+}
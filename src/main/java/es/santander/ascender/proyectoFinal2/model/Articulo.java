@@ -1,14 +1,30 @@
 package es.santander.ascender.proyectoFinal2.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonProperty.Access;
+import es.santander.ascender.proyectoFinal2.repository.SecuenciaCambioListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 @Entity
-
+@Table(indexes = {
+        // Índices para el listado paginado por clave (borrado = false AND id > ? ORDER BY id)
+        @Index(name = "idx_articulo_borrado_id", columnList = "borrado, id"),
+        @Index(name = "idx_articulo_familia_borrado_id", columnList = "familia, borrado, id"),
+        // Índice para el feed de cambios (secuencia_cambio > ? ORDER BY secuencia_cambio)
+        @Index(name = "idx_articulo_secuencia_cambio", columnList = "secuencia_cambio")
+})
+@EntityListeners(SecuenciaCambioListener.class)
+// Sólo se escriben las columnas modificadas: una edición no debe reescribir el stock que leyó
+// si entretanto una venta lo ha cambiado (los cambios de stock no incrementan la versión)
+@DynamicUpdate
 public class Articulo {
 
+    // Secuencia con reserva de bloques para poder agrupar los INSERT en las importaciones masivas
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "articulo_seq")
+    @SequenceGenerator(name = "articulo_seq", sequenceName = "articulo_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank(message = "El nombre es obligatorio")
@@ -40,6 +56,15 @@ public class Articulo {
     // Flag para borrado lógico
     private boolean borrado = false;
 
+    // Versión para el control de concurrencia optimista de los datos de catálogo: el cliente la
+    // devuelve al modificar. Los cambios de stock no la incrementan porque la edición no toca el stock
+    @Version
+    private Long version;
+
+    // Secuencia del último cambio, la asigna SecuenciaCambioListener al guardar
+    @JsonProperty(access = Access.READ_ONLY)
+    private Long secuenciaCambio;
+
     // Constructor vacío
     public Articulo() {
     }
@@ -137,4 +162,20 @@ public class Articulo {
     public void setBorrado(boolean borrado) {
         this.borrado = borrado;
     }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Long getSecuenciaCambio() {
+        return secuenciaCambio;
+    }
+
+    public void setSecuenciaCambio(Long secuenciaCambio) {
+        this.secuenciaCambio = secuenciaCambio;
+    }
 }
@@ -10,8 +10,10 @@ import jakarta.validation.constraints.NotNull;
 @Table(name = "detalles_compra")
 public class DetalleCompra {
 
+    // Secuencia con reserva de bloques para que Hibernate pueda agrupar los INSERT de las líneas
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "detalle_compra_seq")
+    @SequenceGenerator(name = "detalle_compra_seq", sequenceName = "detalle_compra_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.EAGER)
@@ -10,8 +10,10 @@ import jakarta.validation.constraints.NotNull;
 @Table(name = "detalles_venta")
 public class DetalleVenta {
 
+    // Secuencia con reserva de bloques para que Hibernate pueda agrupar los INSERT de las líneas
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "detalle_venta_seq")
+    @SequenceGenerator(name = "detalle_venta_seq", sequenceName = "detalle_venta_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.EAGER)
@@ -0,0 +1,43 @@
+package es.santander.ascender.proyectoFinal2.model;
+
+import jakarta.persistence.*;
+
+// Fila única con el último segmento del diario de stock volcado en la tabla articulo.
+// Se actualiza en la misma transacción que el volcado, así que la recuperación nunca aplica un segmento dos veces
+@Entity
+@Table(name = "estado_motor_stock")
+public class EstadoMotorStock {
+
+    public static final Long ID = 1L;
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private Long ultimoSegmentoAplicado;
+
+    // Constructor vacío
+    public EstadoMotorStock() {
+    }
+
+    public EstadoMotorStock(Long id, Long ultimoSegmentoAplicado) {
+        this.id = id;
+        this.ultimoSegmentoAplicado = ultimoSegmentoAplicado;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getUltimoSegmentoAplicado() {
+        return ultimoSegmentoAplicado;
+    }
+
+    public void setUltimoSegmentoAplicado(Long ultimoSegmentoAplicado) {
+        this.ultimoSegmentoAplicado = ultimoSegmentoAplicado;
+    }
+}
@@ -0,0 +1,54 @@
+package es.santander.ascender.proyectoFinal2.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Stock de un artículo en una fecha, calculado a partir de la instantánea anterior y los movimientos
+// intermedios. Sólo se guarda para los artículos con movimientos desde la instantánea anterior
+@Entity
+@Table(name = "instantanea_stock", indexes = {
+        @Index(name = "idx_instantanea_stock_articulo_fecha", columnList = "articulo_id, fecha"),
+        @Index(name = "idx_instantanea_stock_fecha", columnList = "fecha")
+})
+public class InstantaneaStock {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "instantanea_stock_seq")
+    @SequenceGenerator(name = "instantanea_stock_seq", sequenceName = "instantanea_stock_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "articulo_id", nullable = false)
+    private Long articuloId;
+
+    @Column(nullable = false)
+    private LocalDateTime fecha;
+
+    @Column(nullable = false)
+    private Long stock;
+
+    // Constructor vacío
+    public InstantaneaStock() {
+    }
+
+    public InstantaneaStock(Long articuloId, LocalDateTime fecha, Long stock) {
+        this.articuloId = articuloId;
+        this.fecha = fecha;
+        this.stock = stock;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getArticuloId() {
+        return articuloId;
+    }
+
+    public LocalDateTime getFecha() {
+        return fecha;
+    }
+
+    public Long getStock() {
+        return stock;
+    }
+}
@@ -0,0 +1,79 @@
+package es.santander.ascender.proyectoFinal2.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+// Movimiento del libro de stock: sólo se insertan, nunca se modifican ni se borran.
+// Anular una venta o compra no borra sus movimientos, añade los contrarios
+@Entity
+@Table(name = "movimiento_stock", indexes = {
+        // Índice para el stock en una fecha (articulo_id = ? AND fecha en un intervalo)
+        @Index(name = "idx_movimiento_stock_articulo_fecha", columnList = "articulo_id, fecha"),
+        // Índice para las instantáneas periódicas, que agregan los movimientos de un intervalo
+        @Index(name = "idx_movimiento_stock_fecha", columnList = "fecha")
+})
+public class MovimientoStock {
+
+    public enum TipoMovimiento {
+        ALTA, AJUSTE, VENTA, ANULACION_VENTA, COMPRA, ANULACION_COMPRA
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movimiento_stock_seq")
+    @SequenceGenerator(name = "movimiento_stock_seq", sequenceName = "movimiento_stock_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "articulo_id", nullable = false)
+    private Long articuloId;
+
+    // Unidades que entran (positivo) o salen (negativo) del stock
+    @Column(nullable = false)
+    private Integer cantidad;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private TipoMovimiento tipo;
+
+    // ID de la venta o compra que origina el movimiento, si la hay
+    private Long referencia;
+
+    @Column(nullable = false)
+    private LocalDateTime fecha;
+
+    // Constructor vacío
+    public MovimientoStock() {
+    }
+
+    public MovimientoStock(Long articuloId, Integer cantidad, TipoMovimiento tipo, Long referencia,
+            LocalDateTime fecha) {
+        this.articuloId = articuloId;
+        this.cantidad = cantidad;
+        this.tipo = tipo;
+        this.referencia = referencia;
+        this.fecha = fecha;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getArticuloId() {
+        return articuloId;
+    }
+
+    public Integer getCantidad() {
+        return cantidad;
+    }
+
+    public TipoMovimiento getTipo() {
+        return tipo;
+    }
+
+    public Long getReferencia() {
+        return referencia;
+    }
+
+    public LocalDateTime getFecha() {
+        return fecha;
+    }
+}
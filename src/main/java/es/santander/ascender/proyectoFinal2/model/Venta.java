@@ -10,8 +10,10 @@ import com.fasterxml.jackson.annotation.JsonManagedReference;
 @Entity
 public class Venta {
 
+    // Secuencia con reserva de bloques para que Hibernate pueda agrupar los INSERT de las ventas tramitadas en lote
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "venta_seq")
+    @SequenceGenerator(name = "venta_seq", sequenceName = "venta_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false)
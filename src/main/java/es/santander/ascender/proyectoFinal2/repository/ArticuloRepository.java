@@ -1,22 +1,89 @@
 package es.santander.ascender.proyectoFinal2.repository;
 
+import es.santander.ascender.proyectoFinal2.dto.ArticuloEscaneo;
+import es.santander.ascender.proyectoFinal2.dto.ArticuloTexto;
 import es.santander.ascender.proyectoFinal2.model.Articulo;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
-public interface ArticuloRepository extends JpaRepository<Articulo, Long> {
+public interface ArticuloRepository extends JpaRepository<Articulo, Long>, ArticuloRepositoryCustom {
     
     Optional<Articulo> findByCodigoBarras(String codigoBarras);
     
     boolean existsByCodigoBarras(String codigoBarras);
+
+    // Comprobación de duplicados en bloque para las importaciones
+    @Query("SELECT a.codigoBarras FROM Articulo a WHERE a.codigoBarras IN :codigos")
+    List<String> findCodigosBarrasExistentes(@Param("codigos") Collection<String> codigos);
     
     List<Articulo> findByBorradoFalse();
     
     List<Articulo> findByFamiliaAndBorradoFalse(String familia);
     
     List<Articulo> findByNombreContainingIgnoreCaseAndBorradoFalse(String nombre);
-}
\ No newline at end of file
+
+    // Paginación por clave: artículos con ID mayor que el último de la página anterior
+    List<Articulo> findByBorradoFalseAndIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    List<Articulo> findByFamiliaAndBorradoFalseAndIdGreaterThanOrderByIdAsc(String familia, Long id, Limit limit);
+
+    // Recorrido del catálogo con un cursor de sólo avance para la exportación. Debe consumirse
+    // dentro de una transacción y cerrarse al terminar
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT a FROM Articulo a WHERE a.borrado = false ORDER BY a.id")
+    Stream<Articulo> streamActivos();
+
+    // Proyecciones para el índice de códigos de barras, sin cargar entidades completas
+    @Query("SELECT new es.santander.ascender.proyectoFinal2.dto.ArticuloEscaneo("
+            + "a.id, a.codigoBarras, a.nombre, a.precioVenta, a.stock, a.borrado) FROM Articulo a")
+    List<ArticuloEscaneo> findResumenesEscaneo();
+
+    @Query("SELECT new es.santander.ascender.proyectoFinal2.dto.ArticuloEscaneo("
+            + "a.id, a.codigoBarras, a.nombre, a.precioVenta, a.stock, a.borrado) FROM Articulo a WHERE a.id IN :ids")
+    List<ArticuloEscaneo> findResumenesEscaneoPorIds(@Param("ids") Collection<Long> ids);
+
+    // Proyecciones para los índices de búsqueda de texto. La carga completa va por ID creciente
+    // para que IndiceTrigramas añada cada ID al final de sus listas ordenadas
+    @Query("SELECT new es.santander.ascender.proyectoFinal2.dto.ArticuloTexto("
+            + "a.id, a.codigoBarras, a.nombre, a.descripcion, a.borrado) FROM Articulo a WHERE a.borrado = false "
+            + "ORDER BY a.id")
+    List<ArticuloTexto> findTextosActivos();
+
+    @Query("SELECT new es.santander.ascender.proyectoFinal2.dto.ArticuloTexto("
+            + "a.id, a.codigoBarras, a.nombre, a.descripcion, a.borrado) FROM Articulo a WHERE a.id IN :ids")
+    List<ArticuloTexto> findTextosPorIds(@Param("ids") Collection<Long> ids);
+
+    // Feed de cambios: filas con secuencia en (desde, hasta], borradas incluidas
+    List<Articulo> findBySecuenciaCambioGreaterThanAndSecuenciaCambioLessThanEqualOrderBySecuenciaCambioAsc(
+            Long desde, Long hasta, Limit limit);
+
+    // Artículos que aún no tienen ningún movimiento en el libro de stock
+    @Query("SELECT a FROM Articulo a WHERE NOT EXISTS "
+            + "(SELECT 1 FROM MovimientoStock m WHERE m.articuloId = a.id)")
+    List<Articulo> findSinMovimientosStock();
+
+    // SELECT ... FOR UPDATE por orden de ID: espera a las transacciones que ya han modificado las filas
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Articulo a WHERE a.id IN :ids ORDER BY a.id")
+    List<Articulo> findParaReservar(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT a.stock FROM Articulo a WHERE a.id = :id")
+    Optional<Integer> findStockById(@Param("id") Long id);
+}
@@ -0,0 +1,24 @@
+package es.santander.ascender.proyectoFinal2.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface ArticuloRepositoryCustom {
+
+    // Aplica varios incrementos de stock (id -> delta) en un único lote JDBC de UPDATE condicionados
+    // (stock + delta >= mínimo), en el orden de iteración del mapa (CoordinadorStock pasa uno
+    // ordenado por ID). No toca la versión: el stock no lo modifica la edición del artículo.
+    // Devuelve los IDs cuyo cambio no se ha podido aplicar.
+    default List<Long> ajustarStockEnLote(Map<Long, Integer> deltas) {
+        return ajustarStockEnLote(deltas, Map.of());
+    }
+
+    // Igual, pero el stock resultante de cada artículo no puede quedar por debajo de su mínimo
+    // (id -> unidades que deben quedar, p. ej. las retenidas por reservas). Sin mínimo se usa 0.
+    List<Long> ajustarStockEnLote(Map<Long, Integer> deltas, Map<Long, Integer> minimos);
+
+    // Stock actual (id -> stock) de los artículos, bloqueando sus filas por orden de ID con
+    // SELECT ... FOR UPDATE hasta el fin de la transacción. Los IDs que no existen no aparecen.
+    Map<Long, Integer> bloquearStock(Collection<Long> ids);
+}
@@ -0,0 +1,79 @@
+package es.santander.ascender.proyectoFinal2.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ArticuloRepositoryCustomImpl implements ArticuloRepositoryCustom {
+
+    private static final String SQL_AJUSTAR_STOCK =
+            "UPDATE articulo SET stock = stock + ?, secuencia_cambio = ? WHERE id = ? AND stock + ? >= ?";
+
+    private static final String SQL_BLOQUEAR_STOCK =
+            "SELECT id, stock FROM articulo WHERE id IN (%s) ORDER BY id FOR UPDATE";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SecuenciaCambios secuenciaCambios;
+
+    @Override
+    public List<Long> ajustarStockEnLote(Map<Long, Integer> deltas, Map<Long, Integer> minimos) {
+        List<Map.Entry<Long, Integer>> entradas = new ArrayList<>(deltas.entrySet());
+        if (entradas.isEmpty()) {
+            return List.of();
+        }
+
+        // Los cambios pendientes de JPA deben llegar a la base de datos antes que el lote
+        entityManager.flush();
+
+        int[] filas = jdbcTemplate.batchUpdate(SQL_AJUSTAR_STOCK, entradas, entradas.size(), (ps, entrada) -> {
+            ps.setInt(1, entrada.getValue());
+            ps.setLong(2, secuenciaCambios.siguiente());
+            ps.setLong(3, entrada.getKey());
+            ps.setInt(4, entrada.getValue());
+            ps.setInt(5, minimos.getOrDefault(entrada.getKey(), 0));
+        })[0];
+
+        // Las entidades cargadas ya no reflejan el stock real
+        entityManager.clear();
+
+        List<Long> rechazados = new ArrayList<>();
+        for (int i = 0; i < filas.length; i++) {
+            // Algunos drivers devuelven SUCCESS_NO_INFO (-2); sólo 0 indica que el UPDATE no se aplicó
+            if (filas[i] == 0) {
+                rechazados.add(entradas.get(i).getKey());
+            }
+        }
+        return rechazados;
+    }
+
+    @Override
+    public Map<Long, Integer> bloquearStock(Collection<Long> ids) {
+        Map<Long, Integer> stock = new HashMap<>();
+        if (ids.isEmpty()) {
+            return stock;
+        }
+
+        // Igual que en el lote: la lectura debe ver los cambios pendientes de JPA
+        entityManager.flush();
+
+        String sql = String.format(SQL_BLOQUEAR_STOCK, String.join(",", Collections.nCopies(ids.size(), "?")));
+        jdbcTemplate.query(sql, rs -> {
+            stock.put(rs.getLong("id"), rs.getInt("stock"));
+        }, ids.toArray());
+        return stock;
+    }
+}
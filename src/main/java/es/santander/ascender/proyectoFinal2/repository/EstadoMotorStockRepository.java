@@ -0,0 +1,9 @@
+package es.santander.ascender.proyectoFinal2.repository;
+
+import es.santander.ascender.proyectoFinal2.model.EstadoMotorStock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface EstadoMotorStockRepository extends JpaRepository<EstadoMotorStock, Long> {
+}
@@ -0,0 +1,28 @@
+package es.santander.ascender.proyectoFinal2.repository;
+
+import es.santander.ascender.proyectoFinal2.model.InstantaneaStock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface InstantaneaStockRepository extends JpaRepository<InstantaneaStock, Long> {
+
+    @Query("SELECT MAX(i.fecha) FROM InstantaneaStock i")
+    Optional<LocalDateTime> findUltimaFecha();
+
+    // Última instantánea del artículo no posterior a la fecha
+    Optional<InstantaneaStock> findFirstByArticuloIdAndFechaLessThanEqualOrderByFechaDesc(Long articuloId,
+            LocalDateTime fecha);
+
+    // Última instantánea de cada uno de los artículos
+    @Query("SELECT i FROM InstantaneaStock i WHERE i.articuloId IN :ids AND i.fecha = "
+            + "(SELECT MAX(i2.fecha) FROM InstantaneaStock i2 WHERE i2.articuloId = i.articuloId)")
+    List<InstantaneaStock> findUltimas(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,35 @@
+package es.santander.ascender.proyectoFinal2.repository;
+
+import es.santander.ascender.proyectoFinal2.dto.CantidadArticulo;
+import es.santander.ascender.proyectoFinal2.model.MovimientoStock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface MovimientoStockRepository extends JpaRepository<MovimientoStock, Long> {
+
+    // Suma de los movimientos de un artículo en (desde, hasta]
+    @Query("SELECT COALESCE(SUM(m.cantidad), 0) FROM MovimientoStock m "
+            + "WHERE m.articuloId = :articuloId AND m.fecha > :desde AND m.fecha <= :hasta")
+    long sumarCantidades(@Param("articuloId") Long articuloId, @Param("desde") LocalDateTime desde,
+            @Param("hasta") LocalDateTime hasta);
+
+    // Igual, desde el primer movimiento del artículo
+    @Query("SELECT COALESCE(SUM(m.cantidad), 0) FROM MovimientoStock m "
+            + "WHERE m.articuloId = :articuloId AND m.fecha <= :hasta")
+    long sumarCantidadesHasta(@Param("articuloId") Long articuloId, @Param("hasta") LocalDateTime hasta);
+
+    // Suma por artículo de los movimientos en (desde, hasta], para las instantáneas
+    @Query("SELECT new es.santander.ascender.proyectoFinal2.dto.CantidadArticulo(m.articuloId, SUM(m.cantidad)) "
+            + "FROM MovimientoStock m WHERE m.fecha > :desde AND m.fecha <= :hasta GROUP BY m.articuloId")
+    List<CantidadArticulo> sumarPorArticulo(@Param("desde") LocalDateTime desde, @Param("hasta") LocalDateTime hasta);
+
+    @Query("SELECT new es.santander.ascender.proyectoFinal2.dto.CantidadArticulo(m.articuloId, SUM(m.cantidad)) "
+            + "FROM MovimientoStock m WHERE m.fecha <= :hasta GROUP BY m.articuloId")
+    List<CantidadArticulo> sumarPorArticuloHasta(@Param("hasta") LocalDateTime hasta);
+}
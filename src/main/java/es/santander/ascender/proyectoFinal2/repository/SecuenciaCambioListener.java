@@ -0,0 +1,21 @@
+package es.santander.ascender.proyectoFinal2.repository;
+
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+// Hibernate lo instancia a través del contenedor de Spring mientras arranca el EntityManagerFactory;
+// SecuenciaCambios depende de éste, por eso se resuelve de forma diferida
+public class SecuenciaCambioListener {
+
+    @Autowired
+    private ObjectProvider<SecuenciaCambios> secuenciaCambios;
+
+    @PrePersist
+    @PreUpdate
+    public void asignarSecuencia(Articulo articulo) {
+        articulo.setSecuenciaCambio(secuenciaCambios.getObject().siguiente());
+    }
+}
@@ -0,0 +1,66 @@
+package es.santander.ascender.proyectoFinal2.repository;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.TreeSet;
+
+/**
+ * Secuencia de cambios de los artículos. Cada alta, modificación, baja o ajuste de stock
+ * guarda en la fila un valor nuevo y creciente, de modo que los TPV pueden pedir sólo lo
+ * que ha cambiado desde la última sincronización.
+ *
+ * Los valores se asignan al escribir pero las transacciones se confirman en cualquier orden,
+ * así que se lleva la cuenta de los que siguen en curso: el feed de cambios sólo llega hasta
+ * el último valor anterior a todos ellos, y un cliente nunca se salta una fila que aún no era visible.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class SecuenciaCambios {
+
+    private final TreeSet<Long> enCurso = new TreeSet<>();
+
+    private long ultima;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PostConstruct
+    void inicializar() {
+        Long maxima = jdbcTemplate.queryForObject("SELECT MAX(secuencia_cambio) FROM articulo", Long.class);
+        ultima = maxima == null ? 0 : maxima;
+    }
+
+    /**
+     * Reserva el siguiente valor. Dentro de una transacción queda en curso hasta que ésta termina.
+     */
+    public synchronized long siguiente() {
+        long secuencia = ++ultima;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            enCurso.add(secuencia);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    liberar(secuencia);
+                }
+            });
+        }
+        return secuencia;
+    }
+
+    /**
+     * Mayor valor hasta el que todos los cambios están confirmados (o descartados).
+     */
+    public synchronized long limiteConfirmado() {
+        return enCurso.isEmpty() ? ultima : enCurso.first() - 1;
+    }
+
+    private synchronized void liberar(long secuencia) {
+        enCurso.remove(secuencia);
+    }
+}
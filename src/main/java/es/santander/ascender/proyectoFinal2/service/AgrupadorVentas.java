@@ -0,0 +1,151 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.model.Venta;
+import es.santander.ascender.proyectoFinal2.service.VentaService.ResultadoVenta;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commit agrupado de ventas (se activa con ventas.agrupacion.habilitada=true). Las peticiones dejan
+ * su venta en una cola acotada y esperan; un único hilo escritor recoge hasta tamano-lote ventas o
+ * las que lleguen en espera-maxima y las tramita en una sola transacción. Así muchas ventas pequeñas
+ * comparten un commit (y su escritura en disco) en lugar de pagar uno cada una.
+ *
+ * Cada petición recibe su propia venta o su propio error. Si el lote entero falla (p. ej. un
+ * interbloqueo con otra operación), sus ventas se tramitan de nuevo una a una.
+ */
+@Component
+@ConditionalOnProperty(name = "ventas.agrupacion.habilitada", havingValue = "true")
+public class AgrupadorVentas {
+
+    private static final Logger log = LoggerFactory.getLogger(AgrupadorVentas.class);
+
+    private record Pendiente(Venta venta, CompletableFuture<Venta> resultado) {
+    }
+
+    @Autowired
+    private VentaService ventaService;
+
+    @Autowired
+    private ReintentosConcurrencia reintentos;
+
+    @Value("${ventas.agrupacion.capacidad:1000}")
+    private int capacidad;
+
+    @Value("${ventas.agrupacion.tamano-lote:50}")
+    private int tamanoLote;
+
+    @Value("${ventas.agrupacion.espera-maxima:PT0.002S}")
+    private Duration esperaMaxima;
+
+    private BlockingQueue<Pendiente> cola;
+
+    private Thread escritor;
+
+    @PostConstruct
+    void iniciar() {
+        cola = new ArrayBlockingQueue<>(capacidad);
+        escritor = new Thread(this::escribir, "agrupador-ventas");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    @PreDestroy
+    void detener() throws InterruptedException {
+        escritor.interrupt();
+        escritor.join(TimeUnit.SECONDS.toMillis(10));
+        List<Pendiente> restantes = new ArrayList<>();
+        cola.drainTo(restantes);
+        for (Pendiente pendiente : restantes) {
+            pendiente.resultado().completeExceptionally(new IllegalStateException("La aplicación se está deteniendo"));
+        }
+    }
+
+    /**
+     * Encola la venta y espera a que se confirme su lote. Devuelve la venta guardada o lanza la misma
+     * excepción que VentaService.realizarVenta. Si la cola está llena lanza RejectedExecutionException.
+     */
+    public Venta realizar(Venta venta) {
+        Pendiente pendiente = new Pendiente(venta, new CompletableFuture<>());
+        if (!cola.offer(pendiente)) {
+            throw new RejectedExecutionException("Hay demasiadas ventas pendientes de tramitar");
+        }
+        try {
+            return pendiente.resultado().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Operación interrumpida mientras esperaba la venta", e);
+        }
+    }
+
+    private void escribir() {
+        List<Pendiente> lote = new ArrayList<>(tamanoLote);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                lote.add(cola.take());
+                long limite = System.nanoTime() + esperaMaxima.toNanos();
+                while (lote.size() < tamanoLote) {
+                    Pendiente siguiente = cola.poll(limite - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (siguiente == null) {
+                        break;
+                    }
+                    lote.add(siguiente);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!lote.isEmpty()) {
+                tramitar(lote);
+                lote.clear();
+            }
+        }
+    }
+
+    private void tramitar(List<Pendiente> lote) {
+        List<ResultadoVenta> resultados;
+        try {
+            resultados = ventaService.realizarVentas(lote.stream().map(Pendiente::venta).toList());
+        } catch (RuntimeException e) {
+            log.warn("No se ha podido confirmar un lote de {} ventas, se tramitan por separado", lote.size(), e);
+            for (Pendiente pendiente : lote) {
+                try {
+                    pendiente.resultado().complete(
+                            reintentos.ejecutar(() -> ventaService.realizarVenta(pendiente.venta())));
+                } catch (RuntimeException error) {
+                    pendiente.resultado().completeExceptionally(error);
+                }
+            }
+            return;
+        }
+        // El lote ya está confirmado: cada petición recibe su resultado
+        for (int i = 0; i < lote.size(); i++) {
+            ResultadoVenta resultado = resultados.get(i);
+            if (resultado.error() == null) {
+                lote.get(i).resultado().complete(resultado.venta());
+            } else {
+                lote.get(i).resultado().completeExceptionally(resultado.error());
+            }
+        }
+    }
+}
@@ -1,42 +1,216 @@
 package es.santander.ascender.proyectoFinal2.service;
 
+import es.santander.ascender.proyectoFinal2.dto.ArticuloEscaneo;
+import es.santander.ascender.proyectoFinal2.dto.PaginaArticulos;
+import es.santander.ascender.proyectoFinal2.dto.PaginaBusqueda;
+import es.santander.ascender.proyectoFinal2.dto.PaginaCambios;
+import es.santander.ascender.proyectoFinal2.dto.Sugerencia;
+import es.santander.ascender.proyectoFinal2.event.ArticulosModificadosEvent;
+import es.santander.ascender.proyectoFinal2.event.ArticulosModificadosEvent.TipoCambio;
+import es.santander.ascender.proyectoFinal2.indice.IndiceCodigoBarras;
+import es.santander.ascender.proyectoFinal2.indice.IndiceSugerencias;
+import es.santander.ascender.proyectoFinal2.indice.IndiceTrigramas;
 import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.model.MovimientoStock.TipoMovimiento;
 import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import es.santander.ascender.proyectoFinal2.repository.SecuenciaCambios;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class ArticuloService {
+
+    public static final int LIMITE_PAGINA_MAXIMO = 500;
+
+    public static final int LIMITE_SUGERENCIAS_MAXIMO = 50;
+
+    private static final String PREFIJO_CURSOR = "v1:";
+
+    // Tamaño máximo de las listas IN al cargar artículos por ID
+    private static final int TAMANO_BLOQUE_IDS = 1000;
+
     @Autowired
     private ArticuloRepository articuloRepository;
 
+    @Autowired
+    private IndiceCodigoBarras indiceCodigoBarras;
+
+    @Autowired
+    private IndiceTrigramas indiceTrigramas;
+
+    @Autowired
+    private IndiceSugerencias indiceSugerencias;
+
+    @Autowired
+    private SecuenciaCambios secuenciaCambios;
+
+    @Autowired
+    private CoordinadorStock coordinadorStock;
+
+    @Autowired
+    private HistoricoStockService historicoStock;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Transactional(readOnly = true)
     public List<Articulo> listarTodos() {
         return articuloRepository.findByBorradoFalse();
     }
 
+    // Listado paginado por clave: el coste de cada página no depende de su posición en el catálogo
+    @Transactional(readOnly = true)
+    public PaginaArticulos listarPagina(String cursor, int limite, String familia) {
+        if (limite < 1 || limite > LIMITE_PAGINA_MAXIMO) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + LIMITE_PAGINA_MAXIMO);
+        }
+        Long despuesDe = decodificarCursor(cursor);
+
+        // Se pide un artículo de más para saber si hay página siguiente
+        Limit consulta = Limit.of(limite + 1);
+        List<Articulo> articulos = familia == null
+                ? articuloRepository.findByBorradoFalseAndIdGreaterThanOrderByIdAsc(despuesDe, consulta)
+                : articuloRepository.findByFamiliaAndBorradoFalseAndIdGreaterThanOrderByIdAsc(familia, despuesDe, consulta);
+
+        if (articulos.size() <= limite) {
+            return new PaginaArticulos(articulos, null);
+        }
+        List<Articulo> pagina = new ArrayList<>(articulos.subList(0, limite));
+        return new PaginaArticulos(pagina, codificarCursor(pagina.get(limite - 1).getId()));
+    }
+
+    // Cambios posteriores a la secuencia indicada (altas, modificaciones, stock y bajas lógicas)
+    @Transactional(readOnly = true)
+    public PaginaCambios listarCambios(long desde, int limite) {
+        if (desde < 0) {
+            throw new IllegalArgumentException("La secuencia no puede ser negativa");
+        }
+        if (limite < 1 || limite > LIMITE_PAGINA_MAXIMO) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + LIMITE_PAGINA_MAXIMO);
+        }
+        // El límite se lee antes de consultar: todo lo que hay por debajo ya está confirmado
+        long confirmado = secuenciaCambios.limiteConfirmado();
+        if (desde >= confirmado) {
+            return new PaginaCambios(List.of(), desde, true);
+        }
+
+        List<Articulo> cambios = articuloRepository
+                .findBySecuenciaCambioGreaterThanAndSecuenciaCambioLessThanEqualOrderBySecuenciaCambioAsc(
+                        desde, confirmado, Limit.of(limite + 1));
+        if (cambios.size() <= limite) {
+            return new PaginaCambios(cambios, confirmado, true);
+        }
+        List<Articulo> pagina = new ArrayList<>(cambios.subList(0, limite));
+        return new PaginaCambios(pagina, pagina.get(limite - 1).getSecuenciaCambio(), false);
+    }
+
+    private static String codificarCursor(Long ultimoId) {
+        byte[] contenido = (PREFIJO_CURSOR + ultimoId).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(contenido);
+    }
+
+    private static Long decodificarCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return 0L;
+        }
+        try {
+            String contenido = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!contenido.startsWith(PREFIJO_CURSOR)) {
+                throw new IllegalArgumentException("Cursor no válido: " + cursor);
+            }
+            return Long.parseLong(contenido.substring(PREFIJO_CURSOR.length()));
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException también es una IllegalArgumentException
+            throw new IllegalArgumentException("Cursor no válido: " + cursor);
+        }
+    }
+
     @Transactional(readOnly = true)
     public Optional<Articulo> buscarPorId(Long id) {
         return articuloRepository.findById(id);
     }
 
+    // Carga varios artículos con una sola consulta IN, indexados por su ID
+    @Transactional(readOnly = true)
+    public Map<Long, Articulo> buscarPorIds(Collection<Long> ids) {
+        Map<Long, Articulo> articulos = new HashMap<>();
+        for (Articulo articulo : articuloRepository.findAllById(ids)) {
+            articulos.put(articulo.getId(), articulo);
+        }
+        return articulos;
+    }
+
     @Transactional(readOnly = true)
     public Optional<Articulo> buscarPorCodigoBarras(String codigoBarras) {
         return articuloRepository.findByCodigoBarras(codigoBarras);
     }
 
+    // Consulta del TPV al escanear: se resuelve en memoria, sin transacción ni conexión
+    public Optional<ArticuloEscaneo> buscarParaEscaneo(String codigoBarras) {
+        return indiceCodigoBarras.buscar(codigoBarras);
+    }
+
     @Transactional(readOnly = true)
     public List<Articulo> buscarPorFamilia(String familia) {
         return articuloRepository.findByFamiliaAndBorradoFalse(familia);
     }
 
+    // Búsqueda por nombre resuelta con el índice de trigramas; sólo se leen las filas encontradas
     @Transactional(readOnly = true)
     public List<Articulo> buscarPorNombre(String nombre) {
-        return articuloRepository.findByNombreContainingIgnoreCaseAndBorradoFalse(nombre);
+        return cargarEnOrden(indiceTrigramas.buscar(nombre, true));
+    }
+
+    // Búsqueda paginada por nombre y descripción, con los resultados ordenados por relevancia
+    @Transactional(readOnly = true)
+    public PaginaBusqueda buscarTexto(String consulta, int pagina, int tamano) {
+        if (tamano < 1 || tamano > LIMITE_PAGINA_MAXIMO) {
+            throw new IllegalArgumentException("El tamaño de página debe estar entre 1 y " + LIMITE_PAGINA_MAXIMO);
+        }
+        if (pagina < 0) {
+            throw new IllegalArgumentException("La página no puede ser negativa");
+        }
+        List<Long> ids = indiceTrigramas.buscar(consulta, false);
+        int desde = (int) Math.min((long) pagina * tamano, ids.size());
+        int hasta = Math.min(desde + tamano, ids.size());
+        return new PaginaBusqueda(cargarEnOrden(ids.subList(desde, hasta)), ids.size(), pagina, tamano);
+    }
+
+    // Autocompletado mientras se teclea: se resuelve en memoria, sin transacción ni conexión
+    public List<Sugerencia> sugerir(String prefijo, int limite) {
+        if (limite < 1 || limite > LIMITE_SUGERENCIAS_MAXIMO) {
+            throw new IllegalArgumentException("El límite debe estar entre 1 y " + LIMITE_SUGERENCIAS_MAXIMO);
+        }
+        return indiceSugerencias.buscar(prefijo, limite);
+    }
+
+    // Carga los artículos en bloques y los devuelve en el mismo orden que los IDs recibidos
+    private List<Articulo> cargarEnOrden(List<Long> ids) {
+        List<Articulo> articulos = new ArrayList<>(ids.size());
+        for (int desde = 0; desde < ids.size(); desde += TAMANO_BLOQUE_IDS) {
+            List<Long> bloque = ids.subList(desde, Math.min(desde + TAMANO_BLOQUE_IDS, ids.size()));
+            Map<Long, Articulo> porId = buscarPorIds(bloque);
+            for (Long id : bloque) {
+                Articulo articulo = porId.get(id);
+                if (articulo != null && !articulo.isBorrado()) {
+                    articulos.add(articulo);
+                }
+            }
+        }
+        return articulos;
     }
 
     @Transactional
@@ -44,7 +218,12 @@ public class ArticuloService {
         if (articuloRepository.existsByCodigoBarras(articulo.getCodigoBarras())) {
             throw new IllegalArgumentException("Ya existe un artículo con ese código de barras");
         }
-        return articuloRepository.save(articulo);
+        // La versión la asigna JPA; con una versión enviada por el cliente save() intentaría un merge
+        articulo.setVersion(null);
+        Articulo nuevo = articuloRepository.save(articulo);
+        historicoStock.registrarArticulo(TipoMovimiento.ALTA, nuevo.getId(), nuevo.getStock());
+        eventPublisher.publishEvent(ArticulosModificadosEvent.de(nuevo.getId(), TipoCambio.ALTA));
+        return nuevo;
     }
 
     @Transactional
@@ -56,11 +235,35 @@ public class ArticuloService {
         }
 
         // No permitir cambiar el código de barras
-        if (!articuloExistente.get().getCodigoBarras().equals(articulo.getCodigoBarras())) {
+        Articulo existente = articuloExistente.get();
+        if (!existente.getCodigoBarras().equals(articulo.getCodigoBarras())) {
             throw new IllegalArgumentException("No se puede modificar el código de barras de un artículo existente");
         }
 
-        return articuloRepository.save(articulo);
+        // El cliente debe enviar la versión que leyó: si entretanto otra edición ha modificado
+        // el artículo, se rechaza en lugar de sobrescribir sus cambios
+        if (articulo.getVersion() == null) {
+            throw new IllegalArgumentException("Debe indicarse la versión del artículo que se quiere modificar");
+        }
+        if (!articulo.getVersion().equals(existente.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Articulo.class, articulo.getId());
+        }
+
+        // Se copian los datos sobre la entidad gestionada; si alguien la modifica antes del commit,
+        // el UPDATE ... WHERE version = ? no encuentra la fila y la transacción falla igualmente
+        existente.setNombre(articulo.getNombre());
+        existente.setDescripcion(articulo.getDescripcion());
+        existente.setFamilia(articulo.getFamilia());
+        existente.setFotografia(articulo.getFotografia());
+        existente.setPrecioVenta(articulo.getPrecioVenta());
+        existente.setPrecioCompra(articulo.getPrecioCompra());
+        // El stock enviado se ignora: lo cambian ventas, compras y ajustes (actualizarStock) con
+        // UPDATE condicionados que no incrementan la versión, así que un stock leído antes de una
+        // venta la desharía. Por eso tampoco hay conflicto al editar un artículo que se está vendiendo
+        existente.setBorrado(articulo.isBorrado());
+        Articulo actualizado = articuloRepository.saveAndFlush(existente);
+        eventPublisher.publishEvent(ArticulosModificadosEvent.de(actualizado.getId(), TipoCambio.MODIFICACION));
+        return actualizado;
     }
 
     @Transactional
@@ -74,6 +277,7 @@ public class ArticuloService {
         Articulo articulo = articuloOptional.get();
         articulo.setBorrado(true);
         articuloRepository.save(articulo);
+        eventPublisher.publishEvent(ArticulosModificadosEvent.de(id, TipoCambio.BAJA));
     }
 
     @Transactional(readOnly = true)
@@ -83,26 +287,48 @@ public class ArticuloService {
 
     @Transactional
     public void actualizarStock(Long id, int cantidad) {
-        Optional<Articulo> articuloOptional = articuloRepository.findById(id);
-
-        if (articuloOptional.isEmpty()) {
-            throw new IllegalArgumentException("No existe el artículo con ID: " + id);
+        // El stock se modifica en la base de datos con un UPDATE condicionado (o en el motor
+        // en memoria), sin cargar la entidad, para que dos ventas simultáneas no puedan pisarse.
+        // Un descuento no puede consumir las unidades retenidas por reservas
+        if (!coordinadorStock.aplicar(Map.of(id, cantidad)).isEmpty()) {
+            Articulo articulo = articuloRepository.findById(id)
+                    .orElseThrow(() -> new IllegalArgumentException("No existe el artículo con ID: " + id));
+            throw new IllegalArgumentException("No hay stock suficiente del artículo: " + articulo.getNombre());
         }
+        historicoStock.registrarArticulo(TipoMovimiento.AJUSTE, id, cantidad);
+        eventPublisher.publishEvent(ArticulosModificadosEvent.de(id, TipoCambio.STOCK));
+    }
 
-        Articulo articulo = articuloOptional.get();
-        int nuevoStock = articulo.getStock() + cantidad;
+    // Aplica todos los cambios de stock (id -> cantidad) en un único lote, por orden de ID.
+    // Devuelve los IDs rechazados; si hay alguno, el llamante debe abortar la transacción.
+    @Transactional
+    public List<Long> actualizarStockEnLote(Map<Long, Integer> cantidades) {
+        return actualizarStockEnLote(cantidades, false);
+    }
 
-        if (nuevoStock < 0) {
-            throw new IllegalArgumentException("No hay stock suficiente del artículo: " + articulo.getNombre());
+    // Igual; con deReserva son las líneas de la reserva que se confirma y pueden usar sus unidades retenidas
+    @Transactional
+    public List<Long> actualizarStockEnLote(Map<Long, Integer> cantidades, boolean deReserva) {
+        List<Long> rechazados = coordinadorStock.aplicar(cantidades, deReserva);
+        if (!cantidades.isEmpty()) {
+            eventPublisher.publishEvent(ArticulosModificadosEvent.de(cantidades.keySet(), TipoCambio.STOCK));
         }
-
-        articulo.setStock(nuevoStock);
-        articuloRepository.save(articulo);
+        return rechazados;
     }
 
     @Transactional(readOnly = true)
     public boolean hayStockSuficiente(Long id, int cantidad) {
         Optional<Articulo> articuloOptional = articuloRepository.findById(id);
-        return articuloOptional.isPresent() && articuloOptional.get().getStock() >= cantidad;
+        return articuloOptional.isPresent() && stockDisponible(articuloOptional.get()) >= cantidad;
+    }
+
+    // Stock que se puede vender: descuenta las unidades retenidas por reservas
+    public int stockDisponible(Articulo articulo) {
+        return coordinadorStock.disponible(articulo.getId(), articulo.getStock());
+    }
+
+    // Stock que puede vender la confirmación de una reserva, incluidas las unidades que retiene
+    public int stockDisponible(Articulo articulo, boolean deReserva) {
+        return coordinadorStock.disponible(articulo.getId(), articulo.getStock(), deReserva);
     }
 }
@@ -0,0 +1,74 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cifrado de contraseñas con BCrypt en un executor propio, con tantos hilos como procesadores
+ * (seguridad.hash.hilos) y una cola acotada (seguridad.hash.capacidad). Una ráfaga de registros no
+ * puede ocupar más CPU que esos hilos: con la cola llena se lanza RejectedExecutionException
+ * al momento y los hilos de Tomcat quedan libres para las ventas.
+ */
+@Component
+public class CifradoContrasenas {
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    // 0 = un hilo por procesador
+    @Value("${seguridad.hash.hilos:0}")
+    private int hilos;
+
+    @Value("${seguridad.hash.capacidad:50}")
+    private int capacidad;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void iniciar() {
+        int numero = hilos > 0 ? hilos : Runtime.getRuntime().availableProcessors();
+        AtomicInteger contador = new AtomicInteger();
+        executor = new ThreadPoolExecutor(numero, numero, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacidad),
+                tarea -> {
+                    Thread hilo = new Thread(tarea, "cifrado-contrasenas-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+    }
+
+    @PreDestroy
+    void detener() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Cifra la contraseña en el executor y espera el resultado. Lanza RejectedExecutionException
+     * si la cola está llena.
+     */
+    public String cifrar(String contrasena) {
+        Future<String> resultado = executor.submit(() -> passwordEncoder.encode(contrasena));
+        try {
+            return resultado.get();
+        } catch (InterruptedException e) {
+            resultado.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Cifrado de la contraseña interrumpido", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
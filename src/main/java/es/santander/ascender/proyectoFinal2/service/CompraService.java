@@ -3,6 +3,7 @@ package es.santander.ascender.proyectoFinal2.service;
 import es.santander.ascender.proyectoFinal2.model.Articulo;
 import es.santander.ascender.proyectoFinal2.model.Compra;
 import es.santander.ascender.proyectoFinal2.model.DetalleCompra;
+import es.santander.ascender.proyectoFinal2.model.MovimientoStock.TipoMovimiento;
 import es.santander.ascender.proyectoFinal2.model.Usuario;
 import es.santander.ascender.proyectoFinal2.repository.CompraRepository;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,8 +11,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @Transactional
@@ -23,6 +29,9 @@ public class CompraService {
     @Autowired
     private ArticuloService articuloService;
 
+    @Autowired
+    private HistoricoStockService historicoStock;
+
     @Transactional(readOnly = true)
     public List<Compra> listarTodas() {
         return compraRepository.findAll();
@@ -49,26 +58,65 @@ public class CompraService {
     }
 
     public Compra realizarCompra(Compra compra) {
-        // Verificar que los artículos existen y no están borrados
+        // Siempre es una compra nueva: un ID enviado por el cliente (o asignado en un intento
+        // anterior que se deshizo) haría que save() sobrescribiera otra compra
+        compra.setId(null);
         for (DetalleCompra detalle : compra.getDetalles()) {
-            Optional<Articulo> articuloOpt = articuloService.buscarPorId(detalle.getArticulo().getId());
-            if (articuloOpt.isEmpty()) {
-                throw new IllegalArgumentException("No existe el artículo con ID: " + articuloOpt.get().getId());
-            }
+            detalle.setId(null);
+        }
 
-            // Verificar que el artículo no está borrado
-            if (articuloOpt.get().isBorrado()) {
-                throw new IllegalStateException(
-                        "No se puede comprar el artículo porque está descatalogado: " + articuloOpt.get().getNombre());
+        // Cargar todos los artículos de la compra con una sola consulta
+        Set<Long> articulosIds = new HashSet<>();
+        for (DetalleCompra detalle : compra.getDetalles()) {
+            articulosIds.add(detalle.getArticulo().getId());
+        }
+        Map<Long, Articulo> articulos = articuloService.buscarPorIds(articulosIds);
+
+        // Verificar que todos los artículos existen y no están borrados, acumulando los errores
+        List<String> errores = new ArrayList<>();
+        for (DetalleCompra detalle : compra.getDetalles()) {
+            Long articuloId = detalle.getArticulo().getId();
+            Articulo articulo = articulos.get(articuloId);
+            if (articulo == null) {
+                errores.add("No existe el artículo con ID: " + articuloId);
+            } else if (articulo.isBorrado()) {
+                errores.add("No se puede comprar el artículo porque está descatalogado: " + articulo.getNombre());
+            } else if (detalle.getCantidad() == null || detalle.getCantidad() <= 0) {
+                errores.add("La cantidad debe ser mayor a cero para el artículo: " + articulo.getNombre());
             }
-            detalle.setArticulo(articuloOpt.get());
+        }
+        comprobarErrores(errores);
+
+        // Completar las líneas y acumular las unidades compradas de cada artículo
+        Map<Long, Integer> cantidades = new HashMap<>();
+        double total = 0.0;
+        for (DetalleCompra detalle : compra.getDetalles()) {
+            Articulo articulo = articulos.get(detalle.getArticulo().getId());
+            detalle.setArticulo(articulo);
             detalle.setCompra(compra);
-            detalle.setPrecioUnitario(articuloOpt.get().getPrecioCompra());
+            detalle.setPrecioUnitario(articulo.getPrecioCompra());
             detalle.setSubtotal(detalle.getCantidad() * detalle.getPrecioUnitario());
-            articuloService.actualizarStock(detalle.getArticulo().getId(), detalle.getCantidad());
+            cantidades.merge(articulo.getId(), detalle.getCantidad(), Integer::sum);
+            total += detalle.getSubtotal();
+        }
+
+        // Sumar el stock de todos los artículos en un único lote JDBC
+        for (Long articuloId : articuloService.actualizarStockEnLote(cantidades)) {
+            errores.add("No se ha podido actualizar el stock del artículo: " + articulos.get(articuloId).getNombre());
+        }
+        comprobarErrores(errores);
+
+        compra.setTotal(total);
+        compra.setFecha(LocalDateTime.now());
+        Compra guardada = compraRepository.save(compra);
+        historicoStock.registrarLote(TipoMovimiento.COMPRA, guardada.getId(), cantidades);
+        return guardada;
+    }
+
+    private void comprobarErrores(List<String> errores) {
+        if (!errores.isEmpty()) {
+            throw new IllegalStateException("No se puede tramitar la compra. " + String.join(" | ", errores));
         }
-        compra.setFecha(LocalDateTime.now());        
-        return compraRepository.save(compra);
     }
 
     public void anularCompra(Long id) {
@@ -78,10 +126,19 @@ public class CompraService {
         }
 
         Compra compra = compraOpt.get();
-        // Restar el stock que se había añadido
+        // Restar el stock que se había añadido, en un solo lote y en el mismo orden que las ventas
+        Map<Long, Integer> cantidades = new HashMap<>();
+        Map<Long, String> nombres = new HashMap<>();
         for (DetalleCompra detalle : compra.getDetalles()) {
-            articuloService.actualizarStock(detalle.getArticulo().getId(), -detalle.getCantidad());
+            cantidades.merge(detalle.getArticulo().getId(), -detalle.getCantidad(), Integer::sum);
+            nombres.put(detalle.getArticulo().getId(), detalle.getArticulo().getNombre());
+        }
+        List<Long> rechazados = articuloService.actualizarStockEnLote(cantidades);
+        if (!rechazados.isEmpty()) {
+            throw new IllegalArgumentException("No hay stock suficiente del artículo: " + nombres.get(rechazados.get(0)));
         }
+        // La compra desaparece, pero en el libro de stock quedan la entrada y su anulación
+        historicoStock.registrarLote(TipoMovimiento.ANULACION_COMPRA, id, cantidades);
 
         // Eliminar la compra
         compraRepository.deleteById(id);
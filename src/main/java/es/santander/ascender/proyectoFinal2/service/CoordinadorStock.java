@@ -0,0 +1,138 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.inventario.MotorStockMemoria;
+import es.santander.ascender.proyectoFinal2.inventario.RetencionesStock;
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Punto único por el que pasan los cambios de stock de varias líneas (ventas, compras y sus anulaciones).
+ *
+ * Cada cambio bloquea la fila del artículo hasta el commit. Si dos cestas con los mismos artículos los
+ * bloquearan en el orden de la petición, una podría bloquear A y esperar a B mientras la otra bloquea
+ * B y espera a A. Bloqueando siempre las filas por ID creciente (SELECT ... FOR UPDATE ORDER BY id),
+ * todas las transacciones toman los bloqueos en el mismo orden y ese ciclo no puede darse.
+ *
+ * Con inventario.stock.motor=memoria los cambios se delegan en MotorStockMemoria y no bloquean filas.
+ * En ambos casos un descuento no puede dejar el stock por debajo de lo retenido por reservas.
+ */
+@Component
+public class CoordinadorStock {
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @Autowired
+    private RetencionesStock retencionesStock;
+
+    // Sólo existe si el motor en memoria está activado
+    @Autowired(required = false)
+    private MotorStockMemoria motorStockMemoria;
+
+    public boolean enMemoria() {
+        return motorStockMemoria != null;
+    }
+
+    // Stock del artículo sin descontar reservas: el del motor en memoria si está activo, si no el de la tabla
+    public int stock(Long id, int stockTabla) {
+        return motorStockMemoria == null ? stockTabla : motorStockMemoria.disponible(id).orElse(stockTabla);
+    }
+
+    // Stock que aún se puede vender o reservar: el stock menos las unidades retenidas por reservas
+    public int disponible(Long id, int stockTabla) {
+        return disponible(id, stockTabla, false);
+    }
+
+    // Igual; para la venta que confirma una reserva (deReserva) sólo cuentan las reservas que no se están confirmando
+    public int disponible(Long id, int stockTabla, boolean deReserva) {
+        return stock(id, stockTabla) - minimo(id, -1, deReserva);
+    }
+
+    /**
+     * Aplica los cambios (id -> cantidad) en orden canónico. Debe llamarse dentro de una transacción.
+     * Devuelve los IDs rechazados por no existir o por quedar el stock por debajo de lo retenido;
+     * si hay alguno no se escribe ningún cambio, así que la transacción puede seguir con otras operaciones.
+     */
+    public List<Long> aplicar(Map<Long, Integer> cantidades) {
+        return aplicar(cantidades, false);
+    }
+
+    /**
+     * Igual; deReserva indica que es la venta que confirma una reserva, que sí puede consumir sus
+     * unidades retenidas (RetencionesStock.retenidoSinConfirmar).
+     *
+     * Con la tabla se bloquean primero las filas (por orden de ID) y sólo después se lee lo retenido
+     * y se comprueban todas las líneas: una reserva registrada después de esa lectura espera al bloqueo
+     * para leer el stock (stockParaReservar), así que verá el stock ya descontado. Si todas caben, el
+     * lote de UPDATE no puede fallar porque nadie más puede tocar esas filas.
+     */
+    public List<Long> aplicar(Map<Long, Integer> cantidades, boolean deReserva) {
+        if (cantidades.isEmpty()) {
+            return List.of();
+        }
+        if (motorStockMemoria != null) {
+            return motorStockMemoria.aplicar(cantidades, id -> minimo(id, cantidades.get(id), deReserva));
+        }
+        Map<Long, Integer> ordenadas = new TreeMap<>(cantidades);
+        Map<Long, Integer> stock = articuloRepository.bloquearStock(ordenadas.keySet());
+        Map<Long, Integer> minimos = new HashMap<>();
+        List<Long> rechazados = new ArrayList<>();
+        for (Map.Entry<Long, Integer> cambio : ordenadas.entrySet()) {
+            Long id = cambio.getKey();
+            int minimo = minimo(id, cambio.getValue(), deReserva);
+            minimos.put(id, minimo);
+            Integer actual = stock.get(id);
+            if (actual == null || actual + cambio.getValue() < minimo) {
+                rechazados.add(id);
+            }
+        }
+        if (!rechazados.isEmpty()) {
+            return rechazados;
+        }
+        rechazados = articuloRepository.ajustarStockEnLote(ordenadas, minimos);
+        if (!rechazados.isEmpty()) {
+            // Con las filas bloqueadas no debería ocurrir; se aborta para no dejar el lote a medias
+            throw new IllegalStateException("El stock de los artículos " + rechazados
+                    + " ha cambiado con las filas bloqueadas");
+        }
+        return List.of();
+    }
+
+    /**
+     * Stock actual (sin descontar reservas) de los artículos, para comprobar una reserva. Con la tabla
+     * bloquea las filas, así que espera a que terminen las ventas que ya las han modificado.
+     */
+    @Transactional
+    public Map<Long, Integer> stockParaReservar(Set<Long> ids) {
+        Map<Long, Integer> stock = new HashMap<>();
+        if (motorStockMemoria != null) {
+            for (Long id : ids) {
+                motorStockMemoria.disponible(id).ifPresent(s -> stock.put(id, s));
+            }
+        } else {
+            for (Articulo articulo : articuloRepository.findParaReservar(ids)) {
+                stock.put(articulo.getId(), articulo.getStock());
+            }
+        }
+        return stock;
+    }
+
+    // Stock mínimo tras el cambio: los descuentos respetan las unidades retenidas por reservas,
+    // las devoluciones y compras no tienen mínimo
+    private int minimo(Long id, int cantidad, boolean deReserva) {
+        if (cantidad >= 0) {
+            return 0;
+        }
+        return deReserva ? retencionesStock.retenidoSinConfirmar(id) : retencionesStock.retenido(id);
+    }
+}
@@ -0,0 +1,125 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Exportación del catálogo completo sin construir la lista de artículos en memoria:
+ * las filas se leen con un cursor y se escriben en la salida una a una.
+ */
+@Service
+public class ExportacionArticulosService {
+
+    public enum Formato {
+        JSONL,
+        CSV
+    }
+
+    // Cada cuántas filas se vacía el contexto de persistencia para que el heap no crezca
+    private static final int FILAS_POR_LIMPIEZA = 500;
+
+    private static final String CABECERA_CSV =
+            "id,nombre,descripcion,codigoBarras,familia,fotografia,precioVenta,precioCompra,stock";
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Transactional(readOnly = true)
+    public void exportar(OutputStream salida, Formato formato) throws IOException {
+        try (Stream<Articulo> articulos = articuloRepository.streamActivos()) {
+            if (formato == Formato.CSV) {
+                exportarCsv(articulos.iterator(), salida);
+            } else {
+                exportarJsonl(articulos.iterator(), salida);
+            }
+        }
+    }
+
+    private void exportarJsonl(Iterator<Articulo> articulos, OutputStream salida) throws IOException {
+        try (JsonGenerator generador = objectMapper.getFactory().createGenerator(salida)) {
+            generador.setRootValueSeparator(new SerializedString("\n"));
+            int filas = 0;
+            while (articulos.hasNext()) {
+                Articulo articulo = articulos.next();
+                generador.writeStartObject();
+                generador.writeNumberField("id", articulo.getId());
+                generador.writeStringField("nombre", articulo.getNombre());
+                generador.writeStringField("descripcion", articulo.getDescripcion());
+                generador.writeStringField("codigoBarras", articulo.getCodigoBarras());
+                generador.writeStringField("familia", articulo.getFamilia());
+                generador.writeStringField("fotografia", articulo.getFotografia());
+                generador.writeNumberField("precioVenta", articulo.getPrecioVenta());
+                generador.writeNumberField("precioCompra", articulo.getPrecioCompra());
+                generador.writeNumberField("stock", articulo.getStock());
+                generador.writeEndObject();
+                if (++filas % FILAS_POR_LIMPIEZA == 0) {
+                    generador.flush();
+                    entityManager.clear();
+                }
+            }
+            generador.writeRaw('\n');
+        }
+    }
+
+    private void exportarCsv(Iterator<Articulo> articulos, OutputStream salida) throws IOException {
+        try (Writer escritor = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8))) {
+            escritor.write(CABECERA_CSV);
+            escritor.write('\n');
+            int filas = 0;
+            while (articulos.hasNext()) {
+                Articulo articulo = articulos.next();
+                escritor.write(String.valueOf(articulo.getId()));
+                escribirCampo(escritor, articulo.getNombre());
+                escribirCampo(escritor, articulo.getDescripcion());
+                escribirCampo(escritor, articulo.getCodigoBarras());
+                escribirCampo(escritor, articulo.getFamilia());
+                escribirCampo(escritor, articulo.getFotografia());
+                escribirCampo(escritor, String.valueOf(articulo.getPrecioVenta()));
+                escribirCampo(escritor, String.valueOf(articulo.getPrecioCompra()));
+                escribirCampo(escritor, String.valueOf(articulo.getStock()));
+                escritor.write('\n');
+                if (++filas % FILAS_POR_LIMPIEZA == 0) {
+                    escritor.flush();
+                    entityManager.clear();
+                }
+            }
+        }
+    }
+
+    private static void escribirCampo(Writer escritor, String valor) throws IOException {
+        escritor.write(',');
+        if (valor == null) {
+            return;
+        }
+        if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            escritor.write(valor);
+        } else {
+            escritor.write('"');
+            escritor.write(valor.replace("\"", "\"\""));
+            escritor.write('"');
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.dto.CantidadArticulo;
+import es.santander.ascender.proyectoFinal2.dto.StockEnFecha;
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.model.InstantaneaStock;
+import es.santander.ascender.proyectoFinal2.model.MovimientoStock;
+import es.santander.ascender.proyectoFinal2.model.MovimientoStock.TipoMovimiento;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import es.santander.ascender.proyectoFinal2.repository.InstantaneaStockRepository;
+import es.santander.ascender.proyectoFinal2.repository.MovimientoStockRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Libro de movimientos de stock e instantáneas periódicas. Cada venta, compra, anulación, alta o ajuste
+ * inserta sus movimientos en la misma transacción que el cambio de stock, así que el libro siempre
+ * cuadra con el stock. El stock de un artículo en una fecha es su última instantánea anterior más
+ * los movimientos posteriores hasta esa fecha, sin tener que recorrer todo el historial.
+ */
+@Service
+public class HistoricoStockService {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoricoStockService.class);
+
+    // Tamaño máximo de las listas IN al cargar instantáneas por artículo
+    private static final int TAMANO_BLOQUE_IDS = 1000;
+
+    @Autowired
+    private MovimientoStockRepository movimientoRepository;
+
+    @Autowired
+    private InstantaneaStockRepository instantaneaRepository;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Las instantáneas no cubren los últimos minutos: un movimiento se fecha al insertarse pero es
+    // visible al confirmar su transacción, y una instantánea no debe dejar fuera uno ya fechado
+    @Value("${inventario.instantaneas.margen:PT1M}")
+    private Duration margen;
+
+    // Movimientos de varios artículos (articuloId -> cantidad) de una misma operación; referencia es el ID
+    // de la venta o compra, o null. Debe llamarse dentro de la transacción que modifica el stock
+    @Transactional
+    public void registrarLote(TipoMovimiento tipo, Long referencia, Map<Long, Integer> cantidades) {
+        LocalDateTime fecha = LocalDateTime.now();
+        List<MovimientoStock> movimientos = new ArrayList<>(cantidades.size());
+        cantidades.forEach((articuloId, cantidad) -> {
+            if (cantidad != null && cantidad != 0) {
+                movimientos.add(new MovimientoStock(articuloId, cantidad, tipo, referencia, fecha));
+            }
+        });
+        movimientoRepository.saveAll(movimientos);
+    }
+
+    // Movimiento de un solo artículo sin venta ni compra asociada (alta o ajuste)
+    @Transactional
+    public void registrarArticulo(TipoMovimiento tipo, Long articuloId, Integer cantidad) {
+        Map<Long, Integer> cantidades = new HashMap<>();
+        cantidades.put(articuloId, cantidad);
+        registrarLote(tipo, null, cantidades);
+    }
+
+    /**
+     * Los artículos creados sin pasar por el servicio (datos iniciales, tablas anteriores al libro)
+     * reciben un movimiento de alta con su stock actual para que el libro parta de él.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void registrarStockInicial() {
+        transactionTemplate.executeWithoutResult(estado -> {
+            Map<Long, Integer> cantidades = new HashMap<>();
+            for (Articulo articulo : articuloRepository.findSinMovimientosStock()) {
+                cantidades.put(articulo.getId(), articulo.getStock());
+            }
+            registrarLote(TipoMovimiento.ALTA, null, cantidades);
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public StockEnFecha stockEnFecha(Long articuloId, LocalDateTime fecha) {
+        if (!articuloRepository.existsById(articuloId)) {
+            throw new IllegalArgumentException("No existe el artículo con ID: " + articuloId);
+        }
+        Optional<InstantaneaStock> instantanea =
+                instantaneaRepository.findFirstByArticuloIdAndFechaLessThanEqualOrderByFechaDesc(articuloId, fecha);
+        long stock = instantanea.isPresent()
+                ? instantanea.get().getStock()
+                        + movimientoRepository.sumarCantidades(articuloId, instantanea.get().getFecha(), fecha)
+                : movimientoRepository.sumarCantidadesHasta(articuloId, fecha);
+        return new StockEnFecha(articuloId, fecha, stock);
+    }
+
+    @Scheduled(initialDelayString = "${inventario.instantaneas.retardo-inicial:PT1M}",
+            fixedDelayString = "${inventario.instantaneas.intervalo:PT1H}")
+    public void generarInstantaneas() {
+        try {
+            generarInstantaneas(LocalDateTime.now().minus(margen));
+        } catch (RuntimeException e) {
+            log.error("No se han podido generar las instantáneas de stock", e);
+        }
+    }
+
+    /**
+     * Guarda una instantánea con fecha hasta de cada artículo con movimientos desde la instantánea
+     * anterior. Devuelve el número de instantáneas guardadas.
+     */
+    public synchronized int generarInstantaneas(LocalDateTime hasta) {
+        Integer generadas = transactionTemplate.execute(estado -> {
+            Optional<LocalDateTime> desde = instantaneaRepository.findUltimaFecha();
+            if (desde.isPresent() && !hasta.isAfter(desde.get())) {
+                return 0;
+            }
+            List<CantidadArticulo> cambios = desde.isPresent()
+                    ? movimientoRepository.sumarPorArticulo(desde.get(), hasta)
+                    : movimientoRepository.sumarPorArticuloHasta(hasta);
+
+            List<InstantaneaStock> instantaneas = new ArrayList<>(cambios.size());
+            for (int inicio = 0; inicio < cambios.size(); inicio += TAMANO_BLOQUE_IDS) {
+                List<CantidadArticulo> bloque =
+                        cambios.subList(inicio, Math.min(inicio + TAMANO_BLOQUE_IDS, cambios.size()));
+                Map<Long, Long> anteriores = new HashMap<>();
+                for (InstantaneaStock anterior : instantaneaRepository.findUltimas(
+                        bloque.stream().map(CantidadArticulo::articuloId).toList())) {
+                    anteriores.put(anterior.getArticuloId(), anterior.getStock());
+                }
+                for (CantidadArticulo cambio : bloque) {
+                    long stock = anteriores.getOrDefault(cambio.articuloId(), 0L) + cambio.cantidad();
+                    instantaneas.add(new InstantaneaStock(cambio.articuloId(), hasta, stock));
+                }
+            }
+            instantaneaRepository.saveAll(instantaneas);
+            return instantaneas.size();
+        });
+        if (generadas > 0) {
+            log.info("Instantáneas de stock generadas: {} artículos hasta {}", generadas, hasta);
+        }
+        return generadas;
+    }
+}
@@ -0,0 +1,345 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.dto.InformeImportacion;
+import es.santander.ascender.proyectoFinal2.dto.InformeImportacion.ErrorFila;
+import es.santander.ascender.proyectoFinal2.event.ArticulosModificadosEvent;
+import es.santander.ascender.proyectoFinal2.event.ArticulosModificadosEvent.TipoCambio;
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.model.MovimientoStock.TipoMovimiento;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Importación masiva de artículos desde CSV. El fichero se lee línea a línea y se procesa
+ * en bloques, cada uno en su propia transacción, así que la memoria usada no depende del tamaño del fichero.
+ */
+@Service
+public class ImportacionArticulosService {
+
+    public static final int TAMANO_BLOQUE = 500;
+
+    // Una línea más larga no puede ser un artículo válido: se rechaza sin acumularla en memoria
+    public static final int LONGITUD_MAXIMA_LINEA = 16 * 1024;
+
+    private static final int MAX_ERRORES_INFORMADOS = 1000;
+
+    private static final List<String> COLUMNAS_OBLIGATORIAS =
+            List.of("nombre", "codigoBarras", "familia", "precioVenta", "precioCompra", "stock");
+
+    private record Fila(int linea, Articulo articulo) {
+    }
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private HistoricoStockService historicoStock;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public InformeImportacion importar(Reader origen) throws IOException {
+        LectorLineas lector = new LectorLineas(origen);
+        String cabecera = lector.siguiente();
+        if (cabecera == null || cabecera.isBlank()) {
+            throw new IllegalArgumentException("El fichero está vacío");
+        }
+        if (lector.demasiadoLarga) {
+            throw new IllegalArgumentException("La cabecera supera los " + LONGITUD_MAXIMA_LINEA + " caracteres");
+        }
+        // Se admite ';' como separador, habitual en las hojas de cálculo en español
+        char separador = cabecera.indexOf(';') >= 0 && cabecera.indexOf(',') < 0 ? ';' : ',';
+        Map<String, Integer> columnas = leerCabecera(cabecera.replace("\uFEFF", ""), separador);
+
+        Contadores contadores = new Contadores();
+        List<Fila> bloque = new ArrayList<>(TAMANO_BLOQUE);
+        String linea;
+        int numero = 1;
+        while ((linea = lector.siguiente()) != null) {
+            numero++;
+            if (linea.isBlank() && !lector.demasiadoLarga) {
+                continue;
+            }
+            contadores.procesadas++;
+            if (lector.demasiadoLarga) {
+                contadores.error(numero, null, "La línea supera los " + LONGITUD_MAXIMA_LINEA + " caracteres");
+                continue;
+            }
+            try {
+                bloque.add(new Fila(numero, leerArticulo(dividir(linea, separador), columnas, separador)));
+            } catch (IllegalArgumentException e) {
+                contadores.error(numero, null, e.getMessage());
+            }
+            if (bloque.size() == TAMANO_BLOQUE) {
+                importarBloque(bloque, contadores);
+                bloque.clear();
+            }
+        }
+        if (!bloque.isEmpty()) {
+            importarBloque(bloque, contadores);
+        }
+        return new InformeImportacion(contadores.procesadas, contadores.importadas, contadores.erroneas,
+                contadores.errores);
+    }
+
+    private void importarBloque(List<Fila> bloque, Contadores contadores) {
+        // Validación de cada fila y de códigos repetidos dentro del propio bloque
+        List<Fila> candidatas = new ArrayList<>(bloque.size());
+        Set<String> codigosBloque = new HashSet<>();
+        for (Fila fila : bloque) {
+            Set<ConstraintViolation<Articulo>> violaciones = validator.validate(fila.articulo());
+            String codigo = fila.articulo().getCodigoBarras();
+            if (!violaciones.isEmpty()) {
+                contadores.error(fila.linea(), codigo, violaciones.stream()
+                        .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                        .sorted()
+                        .collect(Collectors.joining(", ")));
+            } else if (!codigosBloque.add(codigo)) {
+                contadores.error(fila.linea(), codigo, "Código de barras repetido en el fichero");
+            } else {
+                candidatas.add(fila);
+            }
+        }
+        if (candidatas.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(estado -> insertar(candidatas, contadores));
+        } catch (DataIntegrityViolationException e) {
+            // Otro proceso ha dado de alta alguno de los códigos entretanto, o algún valor no cabe
+            // en su columna: se reintenta fila a fila para importar las demás
+            for (Fila fila : candidatas) {
+                fila.articulo().setId(null);
+                fila.articulo().setVersion(null);
+                try {
+                    transactionTemplate.executeWithoutResult(estado -> insertar(List.of(fila), contadores));
+                } catch (DataIntegrityViolationException ex) {
+                    String codigo = fila.articulo().getCodigoBarras();
+                    contadores.error(fila.linea(), codigo, articuloRepository.existsByCodigoBarras(codigo)
+                            ? "Ya existe un artículo con ese código de barras"
+                            : "La base de datos ha rechazado la fila: algún valor es demasiado largo o no es válido");
+                }
+            }
+        }
+    }
+
+    // Se ejecuta dentro de la transacción del bloque
+    private void insertar(List<Fila> filas, Contadores contadores) {
+        Set<String> codigos = filas.stream().map(f -> f.articulo().getCodigoBarras()).collect(Collectors.toSet());
+        Set<String> existentes = new HashSet<>(articuloRepository.findCodigosBarrasExistentes(codigos));
+
+        List<Articulo> nuevos = new ArrayList<>(filas.size());
+        List<Fila> errores = new ArrayList<>();
+        for (Fila fila : filas) {
+            if (existentes.contains(fila.articulo().getCodigoBarras())) {
+                errores.add(fila);
+            } else {
+                nuevos.add(fila.articulo());
+            }
+        }
+        if (!nuevos.isEmpty()) {
+            // Con la secuencia agrupada y hibernate.jdbc.batch_size los INSERT viajan en lotes
+            articuloRepository.saveAll(nuevos);
+            Map<Long, Integer> altas = new HashMap<>();
+            for (Articulo articulo : nuevos) {
+                altas.put(articulo.getId(), articulo.getStock());
+            }
+            historicoStock.registrarLote(TipoMovimiento.ALTA, null, altas);
+            // Por el repositorio y no por el EntityManager, para que un error de los INSERT llegue
+            // traducido a DataIntegrityViolationException
+            articuloRepository.flush();
+            entityManager.clear();
+            eventPublisher.publishEvent(ArticulosModificadosEvent.de(
+                    nuevos.stream().map(Articulo::getId).toList(), TipoCambio.ALTA));
+        }
+
+        // Los contadores sólo se actualizan si el INSERT no ha fallado
+        contadores.importadas += nuevos.size();
+        for (Fila fila : errores) {
+            contadores.error(fila.linea(), fila.articulo().getCodigoBarras(),
+                    "Ya existe un artículo con ese código de barras");
+        }
+    }
+
+    private static Map<String, Integer> leerCabecera(String cabecera, char separador) {
+        List<String> nombres = dividir(cabecera, separador);
+        Map<String, Integer> columnas = new HashMap<>();
+        for (int i = 0; i < nombres.size(); i++) {
+            columnas.put(nombres.get(i).trim(), i);
+        }
+        List<String> faltan = COLUMNAS_OBLIGATORIAS.stream().filter(c -> !columnas.containsKey(c)).toList();
+        if (!faltan.isEmpty()) {
+            throw new IllegalArgumentException("Faltan columnas obligatorias en la cabecera: " + faltan);
+        }
+        return columnas;
+    }
+
+    private static Articulo leerArticulo(List<String> campos, Map<String, Integer> columnas, char separador) {
+        Articulo articulo = new Articulo();
+        articulo.setNombre(campo(campos, columnas, "nombre"));
+        articulo.setDescripcion(campo(campos, columnas, "descripcion"));
+        articulo.setCodigoBarras(campo(campos, columnas, "codigoBarras"));
+        articulo.setFamilia(campo(campos, columnas, "familia"));
+        articulo.setFotografia(campo(campos, columnas, "fotografia"));
+        articulo.setPrecioVenta(decimal(campo(campos, columnas, "precioVenta"), "precioVenta", separador));
+        articulo.setPrecioCompra(decimal(campo(campos, columnas, "precioCompra"), "precioCompra", separador));
+        String stock = campo(campos, columnas, "stock");
+        try {
+            articulo.setStock(stock == null ? null : Integer.valueOf(stock));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("stock no es un número entero: " + stock);
+        }
+        return articulo;
+    }
+
+    private static String campo(List<String> campos, Map<String, Integer> columnas, String nombre) {
+        Integer indice = columnas.get(nombre);
+        if (indice == null || indice >= campos.size()) {
+            return null;
+        }
+        String valor = campos.get(indice).trim();
+        return valor.isEmpty() ? null : valor;
+    }
+
+    private static Double decimal(String valor, String nombre, char separador) {
+        if (valor == null) {
+            return null;
+        }
+        try {
+            // Con ';' como separador, la coma es el separador decimal
+            return Double.valueOf(separador == ';' ? valor.replace(',', '.') : valor);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(nombre + " no es un número: " + valor);
+        }
+    }
+
+    // Divide una línea CSV respetando los campos entre comillas y las comillas dobles escapadas
+    static List<String> dividir(String linea, char separador) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean entreComillas = false;
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c == '"' && i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    actual.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreComillas = false;
+                } else {
+                    actual.append(c);
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == separador) {
+                campos.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        if (entreComillas) {
+            throw new IllegalArgumentException("Comillas sin cerrar");
+        }
+        campos.add(actual.toString());
+        return campos;
+    }
+
+    /**
+     * Lee el fichero línea a línea como BufferedReader.readLine, pero sin guardar más de
+     * LONGITUD_MAXIMA_LINEA caracteres: del resto de una línea más larga sólo se busca el final.
+     */
+    private static final class LectorLineas {
+
+        private final Reader origen;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder linea = new StringBuilder();
+        private int posicion;
+        private int limite;
+        // La última línea devuelta estaba truncada
+        private boolean demasiadoLarga;
+
+        private LectorLineas(Reader origen) {
+            this.origen = origen;
+        }
+
+        String siguiente() throws IOException {
+            linea.setLength(0);
+            demasiadoLarga = false;
+            int c = leer();
+            if (c < 0) {
+                return null;
+            }
+            while (c >= 0 && c != '\n') {
+                if (c == '\r') {
+                    // "\r\n" o "\r" sola terminan la línea
+                    if (leer() != '\n' && limite > 0) {
+                        posicion--;
+                    }
+                    break;
+                }
+                if (linea.length() < LONGITUD_MAXIMA_LINEA) {
+                    linea.append((char) c);
+                } else {
+                    demasiadoLarga = true;
+                }
+                c = leer();
+            }
+            return linea.toString();
+        }
+
+        private int leer() throws IOException {
+            if (posicion == limite) {
+                limite = Math.max(0, origen.read(buffer, 0, buffer.length));
+                posicion = 0;
+                if (limite == 0) {
+                    return -1;
+                }
+            }
+            return buffer[posicion++];
+        }
+    }
+
+    private static final class Contadores {
+
+        private int procesadas;
+        private int importadas;
+        private int erroneas;
+        private final List<ErrorFila> errores = new ArrayList<>();
+
+        void error(int linea, String codigoBarras, String mensaje) {
+            erroneas++;
+            if (errores.size() < MAX_ERRORES_INFORMADOS) {
+                errores.add(new ErrorFila(linea, codigoBarras, mensaje));
+            }
+        }
+    }
+}
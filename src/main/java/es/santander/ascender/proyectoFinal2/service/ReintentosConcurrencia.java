@@ -0,0 +1,60 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Reintenta las operaciones de stock que fallan por un conflicto de concurrencia
+ * (interbloqueo, espera de bloqueo agotada o versión desfasada), con esperas crecientes y aleatorias.
+ * Cada intento debe ser una transacción completa, así que se usa por fuera de los servicios transaccionales.
+ */
+@Component
+public class ReintentosConcurrencia {
+
+    private static final Logger log = LoggerFactory.getLogger(ReintentosConcurrencia.class);
+
+    @Value("${inventario.reintentos.maximo:4}")
+    private int maximoIntentos;
+
+    @Value("${inventario.reintentos.espera-inicial-ms:20}")
+    private long esperaInicial;
+
+    public <T> T ejecutar(Supplier<T> operacion) {
+        for (int intento = 1; ; intento++) {
+            try {
+                return operacion.get();
+            } catch (ConcurrencyFailureException e) {
+                if (intento >= maximoIntentos) {
+                    throw e;
+                }
+                log.debug("Conflicto de concurrencia en el intento {}, se reintenta: {}", intento, e.getMessage());
+                esperar(intento);
+            }
+        }
+    }
+
+    public void ejecutar(Runnable operacion) {
+        ejecutar(() -> {
+            operacion.run();
+            return null;
+        });
+    }
+
+    // Espera exponencial con variación aleatoria para que los hilos en conflicto no vuelvan a coincidir
+    private void esperar(int intento) {
+        long base = esperaInicial << (intento - 1);
+        long espera = base / 2 + ThreadLocalRandom.current().nextLong(base + 1);
+        try {
+            Thread.sleep(espera);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Operación interrumpida mientras esperaba para reintentar", e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.dto.Reserva;
+import es.santander.ascender.proyectoFinal2.inventario.RetencionesStock;
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.model.DetalleVenta;
+import es.santander.ascender.proyectoFinal2.model.RolUsuario;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import es.santander.ascender.proyectoFinal2.model.Venta;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Reservas temporales de stock (cestas). Una reserva retiene unidades durante un tiempo limitado:
+ * mientras dura, esas unidades no se pueden vender ni reservar por otros. Al confirmarla se
+ * convierte en una venta normal; si se libera o caduca, las unidades vuelven a estar disponibles.
+ */
+@Service
+public class ReservaService {
+
+    @Autowired
+    private RetencionesStock retencionesStock;
+
+    @Autowired
+    private ArticuloService articuloService;
+
+    @Autowired
+    private VentaService ventaService;
+
+    @Autowired
+    private CoordinadorStock coordinadorStock;
+
+    @Value("${reservas.duracion:PT15M}")
+    private Duration duracionPorDefecto;
+
+    @Value("${reservas.duracion-maxima:PT2H}")
+    private Duration duracionMaxima;
+
+    public Reserva crear(Usuario usuario, Map<Long, Integer> lineas, Duration duracion) {
+        if (lineas.isEmpty()) {
+            throw new IllegalArgumentException("La reserva debe tener al menos un artículo");
+        }
+        if (duracion == null) {
+            duracion = duracionPorDefecto;
+        }
+        if (duracion.isNegative() || duracion.isZero() || duracion.compareTo(duracionMaxima) > 0) {
+            throw new IllegalArgumentException("La duración de la reserva debe estar entre 1 segundo y "
+                    + duracionMaxima.toMinutes() + " minutos");
+        }
+
+        Map<Long, Articulo> articulos = articuloService.buscarPorIds(lineas.keySet());
+        List<String> errores = new ArrayList<>();
+        lineas.forEach((id, cantidad) -> {
+            Articulo articulo = articulos.get(id);
+            if (articulo == null || articulo.isBorrado()) {
+                errores.add("No existe el artículo con ID: " + id);
+            } else if (cantidad == null || cantidad <= 0) {
+                errores.add("La cantidad debe ser mayor a cero para el artículo: " + articulo.getNombre());
+            }
+        });
+        comprobarErrores(errores);
+
+        Reserva reserva = new Reserva(UUID.randomUUID().toString(), usuario.getUsername(), Map.copyOf(lineas),
+                Instant.now().plus(duracion));
+        for (Long id : retencionesStock.retener(reserva, coordinadorStock::stockParaReservar)) {
+            errores.add("Stock insuficiente para el artículo: " + articulos.get(id).getNombre() + " .");
+        }
+        comprobarErrores(errores);
+        return reserva;
+    }
+
+    public Reserva buscar(String id, Usuario usuario) {
+        return retencionesStock.buscar(id)
+                .filter(r -> puedeGestionar(r, usuario))
+                .orElseThrow(() -> new IllegalArgumentException("No existe la reserva: " + id));
+    }
+
+    /**
+     * Convierte la reserva en una venta del usuario. Mientras se vende la reserva sigue reteniendo
+     * sus unidades, que sólo esta venta puede usar, y se libera después del commit. Si la venta
+     * falla la reserva sigue como estaba, salvo que haya caducado entretanto.
+     */
+    public Venta confirmar(String id, Usuario usuario) {
+        buscar(id, usuario);
+        Reserva reserva = retencionesStock.reclamar(id)
+                .orElseThrow(() -> new IllegalArgumentException("No existe la reserva: " + id));
+        Venta guardada;
+        try {
+            Venta venta = new Venta(usuario);
+            reserva.lineas().forEach((articuloId, cantidad) -> {
+                Articulo articulo = new Articulo();
+                articulo.setId(articuloId);
+                DetalleVenta detalle = new DetalleVenta();
+                detalle.setArticulo(articulo);
+                detalle.setCantidad(cantidad);
+                venta.getDetalles().add(detalle);
+            });
+            // realizarVenta abre y confirma su propia transacción
+            guardada = ventaService.realizarVentaDeReserva(venta);
+        } catch (RuntimeException e) {
+            retencionesStock.devolver(reserva);
+            throw e;
+        }
+        retencionesStock.finalizar(reserva);
+        return guardada;
+    }
+
+    public void liberar(String id, Usuario usuario) {
+        retirar(id, usuario);
+    }
+
+    private Reserva retirar(String id, Usuario usuario) {
+        // Se comprueba el propietario antes de retirarla para no liberar reservas ajenas
+        buscar(id, usuario);
+        return retencionesStock.quitar(id)
+                .orElseThrow(() -> new IllegalArgumentException("No existe la reserva: " + id));
+    }
+
+    private static boolean puedeGestionar(Reserva reserva, Usuario usuario) {
+        return usuario.getRol() == RolUsuario.ADMIN || reserva.username().equals(usuario.getUsername());
+    }
+
+    private static void comprobarErrores(List<String> errores) {
+        if (!errores.isEmpty()) {
+            throw new IllegalStateException("No se puede tramitar la reserva. " + String.join(" | ", errores));
+        }
+    }
+}
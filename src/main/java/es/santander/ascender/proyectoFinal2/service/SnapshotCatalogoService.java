@@ -0,0 +1,210 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.dto.ArticuloEscaneo;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import es.santander.ascender.proyectoFinal2.repository.SecuenciaCambios;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Genera periódicamente una instantánea binaria del catálogo activo pensada para que los TPV
+ * la proyecten en memoria y busquen por código de barras sin parsear JSON.
+ *
+ * Formato (big-endian):
+ * <pre>
+ * Cabecera (40 bytes)
+ *   int   magia "CATS"
+ *   int   versión del formato
+ *   long  secuencia de cambios: lo posterior se obtiene con /api/articulos/cambios?desde=...
+ *   long  instante de generación (ms)
+ *   int   número de registros
+ *   int   tamaño de registro (32)
+ *   long  posición de la tabla de textos
+ * Registros de 32 bytes, ordenados por hash y después por id para la búsqueda binaria
+ *   long  id
+ *   long  hash FNV-1a de 64 bits del código de barras en UTF-8
+ *   int   precio de venta en céntimos
+ *   int   stock
+ *   int   posición del texto dentro de la tabla
+ *   short longitud en bytes del código de barras (sin signo)
+ *   short longitud en bytes del nombre (sin signo)
+ * Tabla de textos: código de barras seguido del nombre, en UTF-8, para cada registro
+ * </pre>
+ * Al buscar, el TPV compara también el código de barras del registro para descartar colisiones de hash.
+ */
+@Service
+public class SnapshotCatalogoService {
+
+    public static final int MAGIA = 0x43415453;
+    public static final int VERSION_FORMATO = 1;
+    public static final int TAMANO_CABECERA = 40;
+    public static final int TAMANO_REGISTRO = 32;
+
+    private static final String PREFIJO = "catalogo-";
+    private static final String EXTENSION = ".bin";
+
+    private static final int LONGITUD_MAXIMA_NOMBRE = 0xFFFF / 4;
+
+    private static final long FNV_BASE = 0xcbf29ce484222325L;
+    private static final long FNV_PRIMO = 0x100000001b3L;
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotCatalogoService.class);
+
+    // etag: la secuencia se repite tras un reinicio si la base de datos se recrea, así que lleva
+    // también el instante de arranque, como VersionCatalogo
+    public record Instantanea(Path fichero, long secuencia, String etag) {
+    }
+
+    private record Registro(long id, long hash, int precioCentimos, int stock, byte[] codigoBarras, byte[] nombre) {
+    }
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @Autowired
+    private SecuenciaCambios secuenciaCambios;
+
+    @Value("${catalogo.snapshot.directorio:${java.io.tmpdir}/catalogo-snapshot}")
+    private Path directorio;
+
+    private final String arranque = Long.toString(System.currentTimeMillis(), 36);
+
+    private volatile Instantanea actual;
+
+    public Optional<Instantanea> actual() {
+        return Optional.ofNullable(actual);
+    }
+
+    @Scheduled(initialDelayString = "${catalogo.snapshot.retardo-inicial:PT10S}",
+            fixedDelayString = "${catalogo.snapshot.intervalo:PT5M}")
+    public void generarSiHayCambios() {
+        try {
+            generar();
+        } catch (IOException e) {
+            log.error("No se ha podido generar la instantánea del catálogo", e);
+        }
+    }
+
+    // Escribe una instantánea nueva si el catálogo ha cambiado desde la última
+    public synchronized Instantanea generar() throws IOException {
+        // Igual que en el feed de cambios, la secuencia se lee antes que los datos
+        long secuencia = secuenciaCambios.limiteConfirmado();
+        Instantanea anterior = actual;
+        if (anterior != null && anterior.secuencia() == secuencia) {
+            return anterior;
+        }
+
+        List<Registro> registros = new ArrayList<>();
+        for (ArticuloEscaneo articulo : articuloRepository.findResumenesEscaneo()) {
+            if (!articulo.borrado()) {
+                registros.add(registro(articulo));
+            }
+        }
+        registros.sort(Comparator.comparingLong(Registro::hash).thenComparingLong(Registro::id));
+
+        Files.createDirectories(directorio);
+        Path destino = directorio.resolve(PREFIJO + secuencia + EXTENSION);
+        Path temporal = Files.createTempFile(directorio, PREFIJO, ".tmp");
+        try {
+            try (OutputStream salida = Files.newOutputStream(temporal)) {
+                escribir(registros, secuencia, salida);
+            }
+            // Los clientes nunca ven un fichero a medio escribir
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+
+        actual = new Instantanea(destino, secuencia, "\"" + arranque + "-" + secuencia + "\"");
+        borrarAntiguas(anterior);
+        log.info("Instantánea del catálogo generada: {} artículos, secuencia {}", registros.size(), secuencia);
+        return actual;
+    }
+
+    private static void escribir(List<Registro> registros, long secuencia, OutputStream salida) throws IOException {
+        DataOutputStream datos = new DataOutputStream(new BufferedOutputStream(salida, 64 * 1024));
+        datos.writeInt(MAGIA);
+        datos.writeInt(VERSION_FORMATO);
+        datos.writeLong(secuencia);
+        datos.writeLong(System.currentTimeMillis());
+        datos.writeInt(registros.size());
+        datos.writeInt(TAMANO_REGISTRO);
+        datos.writeLong(TAMANO_CABECERA + (long) registros.size() * TAMANO_REGISTRO);
+
+        int posicionTexto = 0;
+        for (Registro registro : registros) {
+            datos.writeLong(registro.id());
+            datos.writeLong(registro.hash());
+            datos.writeInt(registro.precioCentimos());
+            datos.writeInt(registro.stock());
+            datos.writeInt(posicionTexto);
+            datos.writeShort(registro.codigoBarras().length);
+            datos.writeShort(registro.nombre().length);
+            posicionTexto += registro.codigoBarras().length + registro.nombre().length;
+        }
+        for (Registro registro : registros) {
+            datos.write(registro.codigoBarras());
+            datos.write(registro.nombre());
+        }
+        datos.flush();
+    }
+
+    private static Registro registro(ArticuloEscaneo articulo) {
+        byte[] codigo = articulo.codigoBarras().getBytes(StandardCharsets.UTF_8);
+        String texto = articulo.nombre() == null ? "" : articulo.nombre();
+        // La longitud se guarda en 16 bits: como mucho 4 bytes por carácter
+        if (texto.length() > LONGITUD_MAXIMA_NOMBRE) {
+            texto = texto.substring(0, LONGITUD_MAXIMA_NOMBRE);
+        }
+        byte[] nombre = texto.getBytes(StandardCharsets.UTF_8);
+        int precio = (int) Math.round(articulo.precioVenta() * 100);
+        return new Registro(articulo.id(), hashCodigoBarras(codigo), precio, articulo.stock(), codigo, nombre);
+    }
+
+    // FNV-1a de 64 bits: trivial de reimplementar en los TPV
+    public static long hashCodigoBarras(byte[] codigoBarras) {
+        long hash = FNV_BASE;
+        for (byte b : codigoBarras) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIMO;
+        }
+        return hash;
+    }
+
+    // Se conserva la instantánea anterior para no cortar las descargas que aún la estén enviando.
+    // Sólo cuentan las generadas por este proceso, no el número de secuencia del nombre:
+    // los ficheros de una ejecución anterior pueden tener secuencias mayores si la base de datos
+    // se ha recreado (p. ej. H2 en memoria) y acabarían borrando la instantánea recién generada
+    private void borrarAntiguas(Instantanea anterior) throws IOException {
+        List<Path> conservar = new ArrayList<>();
+        conservar.add(actual.fichero());
+        if (anterior != null) {
+            conservar.add(anterior.fichero());
+        }
+        try (DirectoryStream<Path> ficheros = Files.newDirectoryStream(directorio, PREFIJO + "*" + EXTENSION)) {
+            for (Path fichero : ficheros) {
+                if (!conservar.contains(fichero)) {
+                    Files.deleteIfExists(fichero);
+                }
+            }
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package es.santander.ascender.proyectoFinal2.service;
 
+import es.santander.ascender.proyectoFinal2.config.UsuarioAutenticado;
+import es.santander.ascender.proyectoFinal2.event.UsuarioModificadoEvent;
 import es.santander.ascender.proyectoFinal2.model.Usuario;
 import es.santander.ascender.proyectoFinal2.repository.UsuarioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
 import java.util.Optional;
@@ -17,7 +21,13 @@ public class UsuarioService {
     private UsuarioRepository usuarioRepository;
     
     @Autowired
-    private PasswordEncoder passwordEncoder;
+    private CifradoContrasenas cifradoContrasenas;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
 
     @Transactional(readOnly = true)
     public List<Usuario> listarTodos() {
@@ -34,58 +44,86 @@ public class UsuarioService {
         return usuarioRepository.findByUsername(username);
     }
 
+    /**
+     * Usuario de la petición autenticada. Si el principal es un UsuarioAutenticado (HTTP Basic o token
+     * de acceso) se construye a partir de él sin consultar la base de datos; si no, se busca por username.
+     */
+    public Optional<Usuario> usuarioAutenticado(Authentication authentication) {
+        if (authentication == null) {
+            return Optional.empty();
+        }
+        if (authentication.getPrincipal() instanceof UsuarioAutenticado principal) {
+            return Optional.of(principal.comoUsuario());
+        }
+        return buscarPorUsername(authentication.getName());
+    }
+
     @Transactional(readOnly = true)
     public List<Usuario> buscarPorRol(String rol) {
         return usuarioRepository.findByRol(rol);
     }
 
-    @Transactional
+    // El cifrado con BCrypt se hace antes de abrir la transacción, para no retener una conexión
+    // de la base de datos mientras tanto, y en el executor de CifradoContrasenas
     public Usuario crear(Usuario usuario) {
-        // Verificar si ya existe un usuario con el mismo username
-        if (usuarioRepository.existsByUsername(usuario.getUsername())) {
-            throw new IllegalArgumentException("Ya existe un usuario con el nombre: " + usuario.getUsername());
-        }
-        
-        // Encriptar la contraseña
-        usuario.setPassword(passwordEncoder.encode(usuario.getPassword()));
-        
-        return usuarioRepository.save(usuario);
+        // Se comprueba antes de cifrar para no gastar CPU en un alta que se va a rechazar
+        comprobarUsernameLibre(usuario.getUsername());
+        String cifrada = cifradoContrasenas.cifrar(usuario.getPassword());
+
+        return transactionTemplate.execute(estado -> {
+            // Verificar si ya existe un usuario con el mismo username
+            comprobarUsernameLibre(usuario.getUsername());
+            usuario.setPassword(cifrada);
+            return usuarioRepository.save(usuario);
+        });
     }
 
-    @Transactional
     public Usuario actualizar(Usuario usuario) {
-        Optional<Usuario> usuarioExistente = usuarioRepository.findById(usuario.getId());
-        
-        if (usuarioExistente.isEmpty()) {
-            throw new IllegalArgumentException("No existe el usuario con ID: " + usuario.getId());
-        }
-        
-        // Si se está cambiando el username, verificar que no exista otro usuario con ese username
-        if (!usuarioExistente.get().getUsername().equals(usuario.getUsername()) &&
-            usuarioRepository.existsByUsername(usuario.getUsername())) {
-            throw new IllegalArgumentException("Ya existe un usuario con el nombre: " + usuario.getUsername());
-        }
-        
+        Usuario anterior = usuarioRepository.findById(usuario.getId())
+                .orElseThrow(() -> new IllegalArgumentException("No existe el usuario con ID: " + usuario.getId()));
         // Si la contraseña ha cambiado, encriptarla
-        if (!usuario.getPassword().equals(usuarioExistente.get().getPassword())) {
-            usuario.setPassword(passwordEncoder.encode(usuario.getPassword()));
+        String cifrada = usuario.getPassword().equals(anterior.getPassword())
+                ? null
+                : cifradoContrasenas.cifrar(usuario.getPassword());
+
+        return transactionTemplate.execute(estado -> {
+            Optional<Usuario> usuarioExistente = usuarioRepository.findById(usuario.getId());
+
+            if (usuarioExistente.isEmpty()) {
+                throw new IllegalArgumentException("No existe el usuario con ID: " + usuario.getId());
+            }
+
+            // Si se está cambiando el username, verificar que no exista otro usuario con ese username
+            if (!usuarioExistente.get().getUsername().equals(usuario.getUsername())) {
+                comprobarUsernameLibre(usuario.getUsername());
+            }
+
+            if (cifrada != null) {
+                usuario.setPassword(cifrada);
+            }
+
+            eventPublisher.publishEvent(new UsuarioModificadoEvent(usuario.getId(), usuarioExistente.get().getUsername()));
+            return usuarioRepository.save(usuario);
+        });
+    }
+
+    private void comprobarUsernameLibre(String username) {
+        if (usuarioRepository.existsByUsername(username)) {
+            throw new IllegalArgumentException("Ya existe un usuario con el nombre: " + username);
         }
-        
-        return usuarioRepository.save(usuario);
     }
 
     @Transactional
     public void eliminar(Long id) {
-        if (!usuarioRepository.existsById(id)) {
-            throw new IllegalArgumentException("No existe el usuario con ID: " + id);
-        }
-        usuarioRepository.deleteById(id);
+        Usuario usuario = usuarioRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("No existe el usuario con ID: " + id));
+        eventPublisher.publishEvent(new UsuarioModificadoEvent(id, usuario.getUsername()));
+        usuarioRepository.delete(usuario);
     }
 
-    @SuppressWarnings("unlikely-arg-type")
     @Transactional(readOnly = true)
     public boolean esAdmin(Usuario usuario) {
-        return usuario != null && "ADMIN".equals(usuario.getRol());
+        return usuario != null && usuario.isAdmin();
     }
     
     @Transactional(readOnly = true)
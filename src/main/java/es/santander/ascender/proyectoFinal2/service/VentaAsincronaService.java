@@ -0,0 +1,189 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.dto.TicketVenta;
+import es.santander.ascender.proyectoFinal2.dto.TicketVenta.Estado;
+import es.santander.ascender.proyectoFinal2.model.DetalleVenta;
+import es.santander.ascender.proyectoFinal2.model.RolUsuario;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import es.santander.ascender.proyectoFinal2.model.Venta;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ventas enviadas de forma asíncrona (kioscos de autoservicio). La petición sólo comprueba la forma
+ * de la cesta y deja la venta en la cola de un executor propio, con un número fijo de hilos y una cola
+ * acotada: si está llena se lanza RejectedExecutionException en lugar de acumular hilos de Tomcat
+ * esperando a la base de datos. El resultado se consulta con el ID del ticket.
+ *
+ * Los tickets se guardan en memoria y se descartan un tiempo después de terminar
+ * (ventas.asincronas.conservacion). Tras un reinicio los tickets pendientes se pierden.
+ */
+@Service
+public class VentaAsincronaService {
+
+    private static final Logger log = LoggerFactory.getLogger(VentaAsincronaService.class);
+
+    private static final class Seguimiento {
+
+        private volatile TicketVenta ticket;
+        private final CompletableFuture<TicketVenta> terminado = new CompletableFuture<>();
+
+        Seguimiento(TicketVenta ticket) {
+            this.ticket = ticket;
+        }
+
+        void terminar(TicketVenta resultado) {
+            ticket = resultado;
+            terminado.complete(resultado);
+        }
+    }
+
+    private final Map<String, Seguimiento> tickets = new ConcurrentHashMap<>();
+
+    @Autowired
+    private VentaService ventaService;
+
+    @Autowired
+    private ReintentosConcurrencia reintentos;
+
+    // Si el commit agrupado está activado las ventas asíncronas también pasan por él
+    @Autowired
+    private ObjectProvider<AgrupadorVentas> agrupadorVentas;
+
+    @Value("${ventas.asincronas.hilos:4}")
+    private int hilos;
+
+    @Value("${ventas.asincronas.capacidad:500}")
+    private int capacidad;
+
+    @Value("${ventas.asincronas.conservacion:PT1H}")
+    private Duration conservacion;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void iniciar() {
+        AtomicInteger contador = new AtomicInteger();
+        // AbortPolicy (la política por defecto) rechaza la tarea cuando la cola está llena
+        executor = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacidad),
+                tarea -> {
+                    Thread hilo = new Thread(tarea, "ventas-asincronas-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+    }
+
+    @PreDestroy
+    void detener() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Encola la venta y devuelve su ticket en estado PENDIENTE. Lanza IllegalArgumentException si la
+     * cesta está mal formada y RejectedExecutionException si la cola está llena.
+     */
+    public TicketVenta enviar(Venta venta) {
+        comprobarForma(venta);
+        String username = venta.getUsuario().getUsername();
+        TicketVenta ticket = new TicketVenta(UUID.randomUUID().toString(), username, Estado.PENDIENTE, null, null,
+                Instant.now(), null);
+        Seguimiento seguimiento = new Seguimiento(ticket);
+        tickets.put(ticket.id(), seguimiento);
+        try {
+            executor.execute(() -> seguimiento.terminar(tramitar(ticket, venta)));
+        } catch (RuntimeException e) {
+            tickets.remove(ticket.id());
+            throw e;
+        }
+        return ticket;
+    }
+
+    public TicketVenta buscar(String id, Usuario usuario) {
+        return seguimiento(id, usuario).ticket;
+    }
+
+    // Se completa cuando la venta termina, o ya está completado si había terminado
+    public CompletableFuture<TicketVenta> alTerminar(String id, Usuario usuario) {
+        return seguimiento(id, usuario).terminado;
+    }
+
+    // La conservación cuenta desde que termina la venta: una que ha esperado mucho en la cola
+    // no debe desaparecer antes de que el cliente pueda consultar su resultado
+    @Scheduled(fixedDelayString = "${ventas.asincronas.intervalo-limpieza:PT1M}")
+    public void descartarTerminados() {
+        Instant limite = Instant.now().minus(conservacion);
+        tickets.values().removeIf(s -> s.ticket.terminado() && s.ticket.finalizado().isBefore(limite));
+    }
+
+    private TicketVenta tramitar(TicketVenta ticket, Venta venta) {
+        try {
+            AgrupadorVentas agrupador = agrupadorVentas.getIfAvailable();
+            Venta realizada = agrupador != null
+                    ? agrupador.realizar(venta)
+                    : reintentos.ejecutar(() -> ventaService.realizarVenta(venta));
+            return terminar(ticket, Estado.COMPLETADA, realizada.getId(), null);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return terminar(ticket, Estado.RECHAZADA, null, e.getMessage());
+        } catch (ConcurrencyFailureException e) {
+            return terminar(ticket, Estado.ERROR, null,
+                    "No se ha podido tramitar la venta por un conflicto con otra operación. Inténtelo de nuevo");
+        } catch (RejectedExecutionException e) {
+            return terminar(ticket, Estado.ERROR, null,
+                    "Hay demasiadas ventas pendientes de tramitar. Inténtelo de nuevo en unos segundos");
+        } catch (RuntimeException e) {
+            log.error("Error al tramitar la venta asíncrona {}", ticket.id(), e);
+            return terminar(ticket, Estado.ERROR, null, "Error inesperado al tramitar la venta");
+        }
+    }
+
+    private static TicketVenta terminar(TicketVenta ticket, Estado estado, Long ventaId, String mensaje) {
+        return new TicketVenta(ticket.id(), ticket.username(), estado, ventaId, mensaje, ticket.creado(),
+                Instant.now());
+    }
+
+    private Seguimiento seguimiento(String id, Usuario usuario) {
+        Seguimiento seguimiento = tickets.get(id);
+        if (seguimiento == null || (usuario.getRol() != RolUsuario.ADMIN
+                && !seguimiento.ticket.username().equals(usuario.getUsername()))) {
+            throw new IllegalArgumentException("No existe el ticket: " + id);
+        }
+        return seguimiento;
+    }
+
+    // Sólo la forma de la cesta: el stock y la existencia de los artículos se comprueban al tramitarla
+    private static void comprobarForma(Venta venta) {
+        if (venta.getDetalles() == null || venta.getDetalles().isEmpty()) {
+            throw new IllegalArgumentException("La venta debe tener al menos un artículo");
+        }
+        for (DetalleVenta detalle : venta.getDetalles()) {
+            if (detalle.getArticulo() == null || detalle.getArticulo().getId() == null) {
+                throw new IllegalArgumentException("Falta el ID del artículo en una línea");
+            }
+            if (detalle.getCantidad() == null || detalle.getCantidad() <= 0) {
+                throw new IllegalArgumentException(
+                        "La cantidad debe ser mayor a cero para el artículo: " + detalle.getArticulo().getId());
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package es.santander.ascender.proyectoFinal2.service;
 
 import es.santander.ascender.proyectoFinal2.model.Articulo;
 import es.santander.ascender.proyectoFinal2.model.DetalleVenta;
+import es.santander.ascender.proyectoFinal2.model.MovimientoStock.TipoMovimiento;
 import es.santander.ascender.proyectoFinal2.model.Usuario;
 import es.santander.ascender.proyectoFinal2.model.Venta;
 import es.santander.ascender.proyectoFinal2.repository.VentaRepository;
@@ -11,8 +12,13 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -26,6 +32,9 @@ public class VentaService {
     @Autowired
     private ArticuloService articuloService;
 
+    @Autowired
+    private HistoricoStockService historicoStock;
+
     @Transactional(readOnly = true)
     public List<Venta> listarTodas() {
         return ventaRepository.findAll();
@@ -51,7 +60,111 @@ public class VentaService {
         return ventaRepository.findByUsuarioAndFechaBetween(usuario, fechaInicio, fechaFin);
     }
 
+    // Resultado de una venta tramitada en lote: la venta guardada o el error que la ha rechazado
+    public record ResultadoVenta(Venta venta, RuntimeException error) {
+    }
+
     public Venta realizarVenta(Venta venta) {
+        return realizarVenta(venta, false);
+    }
+
+    // Venta con las líneas de una reserva que se está confirmando: puede usar las unidades que ésta retiene
+    public Venta realizarVentaDeReserva(Venta venta) {
+        return realizarVenta(venta, true);
+    }
+
+    private Venta realizarVenta(Venta venta, boolean deReserva) {
+        Map<Long, Integer> cantidades = validarYDescontarStock(venta, deReserva);
+        // Guardar la venta y sus movimientos de stock
+        Venta guardada = ventaRepository.save(venta);
+        historicoStock.registrarLote(TipoMovimiento.VENTA, guardada.getId(), cantidades);
+        return guardada;
+    }
+
+    /**
+     * Tramita varias ventas en una única transacción, con un solo commit y con los INSERT de todas
+     * ellas agrupados en lotes. Una venta rechazada no afecta a las demás: devuelve, en el mismo
+     * orden, la venta guardada o el error de cada una.
+     *
+     * Las ventas se validan en orden de llegada y el stock de todas las aceptadas se descuenta en un
+     * único pase por CoordinadorStock, en orden canónico; descontarlas una a una volvería a tomar los
+     * bloqueos en el orden de cada cesta y podría interbloquearse con otras transacciones.
+     */
+    public List<ResultadoVenta> realizarVentas(List<Venta> ventas) {
+        RuntimeException[] errores = new RuntimeException[ventas.size()];
+        // Índice de la venta -> sus cambios de stock. Cada venta sólo puede usar el stock que no
+        // hayan tomado ya las anteriores del lote
+        Map<Integer, Map<Long, Integer>> aceptadas = new LinkedHashMap<>();
+        Map<Long, Integer> comprometido = new HashMap<>();
+        for (int i = 0; i < ventas.size(); i++) {
+            try {
+                Map<Long, Integer> cantidades = validarVenta(ventas.get(i), false, comprometido);
+                cantidades.forEach((id, cantidad) -> comprometido.merge(id, -cantidad, Integer::sum));
+                aceptadas.put(i, cantidades);
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                errores[i] = e;
+            }
+        }
+
+        List<Long> rechazados = descontarJuntas(aceptadas.values());
+        while (!rechazados.isEmpty()) {
+            // Otra transacción ha consumido el stock después de validar y el pase no ha aplicado
+            // nada: se rechaza la última venta que usa un artículo sin stock y se vuelve a intentar
+            int ultima = -1;
+            for (Map.Entry<Integer, Map<Long, Integer>> aceptada : aceptadas.entrySet()) {
+                if (!Collections.disjoint(aceptada.getValue().keySet(), rechazados)) {
+                    ultima = aceptada.getKey();
+                }
+            }
+            errores[ultima] = ventaRechazada(erroresDeStock(ventas.get(ultima), rechazados));
+            aceptadas.remove(ultima);
+            rechazados = descontarJuntas(aceptadas.values());
+        }
+
+        List<Venta> guardadas = new ArrayList<>();
+        aceptadas.keySet().forEach(i -> guardadas.add(ventas.get(i)));
+        ventaRepository.saveAll(guardadas);
+        aceptadas.forEach((i, cantidades) ->
+                historicoStock.registrarLote(TipoMovimiento.VENTA, ventas.get(i).getId(), cantidades));
+
+        List<ResultadoVenta> resultados = new ArrayList<>(ventas.size());
+        for (int i = 0; i < ventas.size(); i++) {
+            resultados.add(errores[i] == null
+                    ? new ResultadoVenta(ventas.get(i), null)
+                    : new ResultadoVenta(null, errores[i]));
+        }
+        return resultados;
+    }
+
+    // Descuenta juntos los cambios de stock de varias ventas; si devuelve rechazados no ha aplicado ninguno
+    private List<Long> descontarJuntas(Collection<Map<Long, Integer>> cambios) {
+        Map<Long, Integer> total = new HashMap<>();
+        for (Map<Long, Integer> cantidades : cambios) {
+            cantidades.forEach((id, cantidad) -> total.merge(id, cantidad, Integer::sum));
+        }
+        return articuloService.actualizarStockEnLote(total);
+    }
+
+    // Valida la venta, completa sus líneas y descuenta el stock. Si la rechaza no deja ningún cambio
+    private Map<Long, Integer> validarYDescontarStock(Venta venta, boolean deReserva) {
+        Map<Long, Integer> cantidades = validarVenta(venta, deReserva, Map.of());
+        // El UPDATE condicionado vuelve a comprobar el stock por si otra venta lo ha consumido entretanto
+        comprobarErrores(erroresDeStock(venta, articuloService.actualizarStockEnLote(cantidades, deReserva)));
+        return cantidades;
+    }
+
+    /**
+     * Valida la venta y completa sus líneas, sin tocar el stock. comprometido son las unidades de cada
+     * artículo ya tomadas por otras ventas del mismo lote. Devuelve los cambios de stock (id -> cantidad).
+     */
+    private Map<Long, Integer> validarVenta(Venta venta, boolean deReserva, Map<Long, Integer> comprometido) {
+        // Siempre es una venta nueva: un ID enviado por el cliente (o asignado en un intento
+        // anterior que se deshizo) haría que save() sobrescribiera otra venta
+        venta.setId(null);
+        for (DetalleVenta detalle : venta.getDetalles()) {
+            detalle.setId(null);
+        }
+
         // Verificar que no haya artículos duplicados
 
         Set<Long> articulosIds = new HashSet<>();
@@ -71,42 +184,61 @@ public class VentaService {
                     "No se permiten artículos repetidos en la misma venta. IDs repetidos: " + idsRepetidos);
         }
 
-        // Verificar stock para cada línea
-        for (DetalleVenta detalle : venta.getDetalles()) {
-            Optional<Articulo> articuloOpt = articuloService.buscarPorId(detalle.getArticulo().getId());
-            if (articuloOpt.isEmpty()) {
-                throw new IllegalArgumentException("No existe el artículo con ID: " + detalle.getArticulo().getId());
-            }
-            int cantidad = detalle.getCantidad();
-
-            // Verificar si hay stock suficiente
-            if (!articuloService.hayStockSuficiente(articuloOpt.get().getId(), cantidad)) {
-                throw new IllegalStateException(
-                        "Stock insuficiente para el artículo: " + articuloOpt.get().getNombre() + " .");
-            }
-
-            // Verificar si el artículo está borrado pero tiene stock
+        // Cargar todos los artículos de la venta con una sola consulta
+        Map<Long, Articulo> articulos = articuloService.buscarPorIds(articulosIds);
 
-            if (articuloOpt.isPresent() && articuloOpt.get().isBorrado() && articuloOpt.get().getStock() < cantidad) {
-                throw new IllegalStateException(
-                        "El artículo está descatalogado y no tiene stock suficiente: " + articuloOpt.get().getNombre());
+        // Validar todas las líneas y acumular los errores para poder corregirlas de una vez
+        List<String> errores = new ArrayList<>();
+        for (DetalleVenta detalle : venta.getDetalles()) {
+            Long articuloId = detalle.getArticulo().getId();
+            Articulo articulo = articulos.get(articuloId);
+            if (articulo == null) {
+                errores.add("No existe el artículo con ID: " + articuloId);
+            } else if (detalle.getCantidad() == null || detalle.getCantidad() <= 0) {
+                errores.add("La cantidad debe ser mayor a cero para el artículo: " + articulo.getNombre());
+            } else if (articuloService.stockDisponible(articulo, deReserva)
+                    - comprometido.getOrDefault(articuloId, 0) < detalle.getCantidad()) {
+                errores.add(articulo.isBorrado()
+                        ? "El artículo está descatalogado y no tiene stock suficiente: " + articulo.getNombre()
+                        : "Stock insuficiente para el artículo: " + articulo.getNombre() + " .");
             }
-
         }
+        comprobarErrores(errores);
 
-        // Actualizar stock para cada línea
+        // Completar las líneas y acumular los cambios de stock
+        Map<Long, Integer> cantidades = new HashMap<>();
         for (DetalleVenta detalle : venta.getDetalles()) {
-            Optional<Articulo> articuloOpt = articuloService.buscarPorId(detalle.getArticulo().getId());
-            detalle.setArticulo(articuloOpt.get());
+            Articulo articulo = articulos.get(detalle.getArticulo().getId());
+            detalle.setArticulo(articulo);
             detalle.setVenta(venta);
-            detalle.setPrecioUnitario(articuloOpt.get().getPrecioVenta());            
-            articuloService.actualizarStock(detalle.getArticulo().getId(), -detalle.getCantidad());
-            total=+detalle.getSubtotal();
+            detalle.setPrecioUnitario(articulo.getPrecioVenta());
+            cantidades.put(articulo.getId(), -detalle.getCantidad());
+            total += detalle.getSubtotal();
         }
+
         venta.setTotal(total);
         venta.setFecha(LocalDateTime.now());
-        // Guardar la venta
-        return ventaRepository.save(venta);
+        return cantidades;
+    }
+
+    private List<String> erroresDeStock(Venta venta, List<Long> rechazados) {
+        List<String> errores = new ArrayList<>();
+        for (DetalleVenta detalle : venta.getDetalles()) {
+            if (rechazados.contains(detalle.getArticulo().getId())) {
+                errores.add("Stock insuficiente para el artículo: " + detalle.getArticulo().getNombre() + " .");
+            }
+        }
+        return errores;
+    }
+
+    private void comprobarErrores(List<String> errores) {
+        if (!errores.isEmpty()) {
+            throw ventaRechazada(errores);
+        }
+    }
+
+    private IllegalStateException ventaRechazada(List<String> errores) {
+        return new IllegalStateException("No se puede tramitar la venta. " + String.join(" | ", errores));
     }
 
     public void anularVenta(Long id) {
@@ -116,10 +248,17 @@ public class VentaService {
         }
 
         Venta venta = ventaOpt.get();
-        // Devolver stock al inventario
+        // Devolver stock al inventario, en un solo lote y en el mismo orden que las ventas
+        Map<Long, Integer> cantidades = new HashMap<>();
         for (DetalleVenta detalle : venta.getDetalles()) {
-            articuloService.actualizarStock(detalle.getArticulo().getId(), detalle.getCantidad());
+            cantidades.merge(detalle.getArticulo().getId(), detalle.getCantidad(), Integer::sum);
+        }
+        List<Long> rechazados = articuloService.actualizarStockEnLote(cantidades);
+        if (!rechazados.isEmpty()) {
+            throw new IllegalArgumentException("No existe el artículo con ID: " + rechazados.get(0));
         }
+        // La venta desaparece, pero en el libro de stock quedan la salida y la devolución
+        historicoStock.registrarLote(TipoMovimiento.ANULACION_VENTA, id, cantidades);
         // Eliminar la venta
         ventaRepository.deleteById(id);
     }
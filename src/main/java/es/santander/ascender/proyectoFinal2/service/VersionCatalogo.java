@@ -0,0 +1,38 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.event.ArticulosModificadosEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contador de versión del catálogo. Avanza cada vez que se confirma una escritura de artículos
+ * (incluidos los cambios de stock, que también forman parte de los listados) y sirve
+ * para generar los ETag de los endpoints de consulta sin tocar la base de datos.
+ */
+@Component
+public class VersionCatalogo {
+
+    // El contador vive en memoria: el instante de arranque evita repetir ETag tras un reinicio
+    private final String arranque = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong version = new AtomicLong();
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarArticulos(ArticulosModificadosEvent evento) {
+        version.incrementAndGet();
+    }
+
+    public long actual() {
+        return version.get();
+    }
+
+    /**
+     * ETag fuerte de la versión actual. Debe obtenerse antes de leer los datos: si una escritura
+     * se confirma entretanto, el ETag queda atrasado y el siguiente sondeo recibe los datos nuevos.
+     */
+    public String etag() {
+        return "\"" + arranque + "-" + version.get() + "\"";
+    }
+}
@@ -0,0 +1,85 @@
+package es.santander.ascender.proyectoFinal2;
+
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.model.DetalleVenta;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import es.santander.ascender.proyectoFinal2.model.Venta;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Datos y utilidades comunes de las pruebas de stock y ventas.
+ */
+public final class DatosPrueba {
+
+    @FunctionalInterface
+    public interface TareaHilo {
+        void ejecutar(int hilo) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface CalculoHilo<T> {
+        T calcular(int hilo) throws Exception;
+    }
+
+    private DatosPrueba() {
+    }
+
+    // Artículo sin guardar, con precio de venta 10 y de compra 5
+    public static Articulo articulo(String codigoBarras, int stock) {
+        return new Articulo("Articulo " + codigoBarras, "Artículo de prueba", codigoBarras, "Pruebas", null,
+                10.0, 5.0, stock);
+    }
+
+    // Venta de una línea; el artículo sólo lleva el ID, como llega en una petición
+    public static Venta venta(Usuario usuario, Long articuloId, Integer cantidad) {
+        Articulo articulo = new Articulo();
+        articulo.setId(articuloId);
+        DetalleVenta detalle = new DetalleVenta();
+        detalle.setArticulo(articulo);
+        detalle.setCantidad(cantidad);
+        Venta venta = new Venta(usuario);
+        venta.getDetalles().add(detalle);
+        return venta;
+    }
+
+    /**
+     * Ejecuta la tarea en varios hilos que arrancan a la vez para maximizar la contención.
+     * Espera a que terminen todos y relanza el primer error.
+     */
+    public static void enParalelo(int hilos, TareaHilo tarea) throws Exception {
+        resultadosEnParalelo(hilos, hilo -> {
+            tarea.ejecutar(hilo);
+            return null;
+        });
+    }
+
+    // Como enParalelo, pero devuelve el resultado de cada hilo en el orden de los hilos
+    public static <T> List<T> resultadosEnParalelo(int hilos, CalculoHilo<T> calculo) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(hilos);
+        CountDownLatch salida = new CountDownLatch(1);
+        try {
+            List<Future<T>> pendientes = new ArrayList<>();
+            for (int h = 0; h < hilos; h++) {
+                int hilo = h;
+                pendientes.add(executor.submit(() -> {
+                    salida.await();
+                    return calculo.calcular(hilo);
+                }));
+            }
+            salida.countDown();
+            List<T> resultados = new ArrayList<>();
+            for (Future<T> pendiente : pendientes) {
+                resultados.add(pendiente.get());
+            }
+            return resultados;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package es.santander.ascender.proyectoFinal2.config;
+
+import es.santander.ascender.proyectoFinal2.model.RolUsuario;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import es.santander.ascender.proyectoFinal2.repository.UsuarioRepository;
+import es.santander.ascender.proyectoFinal2.service.UsuarioService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class ProveedorAutenticacionCacheadoTest {
+
+    @Autowired
+    private AuthenticationManager authenticationManager;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    private Authentication autenticar(String username, String contrasena) {
+        return authenticationManager.authenticate(
+                UsernamePasswordAuthenticationToken.unauthenticated(username, contrasena));
+    }
+
+    /**
+     * Una contraseña ya verificada se acepta sin volver a leer el usuario, pero nunca
+     * se acepta otra contraseña con la entrada de la caché.
+     */
+    @Test
+    public void debeReutilizarLasCredencialesVerificadas() {
+        Usuario usuario = usuarioService.crear(new Usuario("cache1", "clave1", RolUsuario.USER));
+        assertTrue(autenticar("cache1", "clave1").isAuthenticated());
+
+        // Borrado directo en el repositorio, sin pasar por el servicio: la caché no se entera
+        usuarioRepository.deleteById(usuario.getId());
+
+        Authentication cacheada = autenticar("cache1", "clave1");
+        assertEquals("cache1", cacheada.getName());
+        assertTrue(cacheada.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_USER")));
+        assertThrows(BadCredentialsException.class, () -> autenticar("cache1", "otra"));
+    }
+
+    /**
+     * Cambiar la contraseña o eliminar el usuario desde el servicio surte efecto en la siguiente petición.
+     */
+    @Test
+    public void debeInvalidarAlModificarOEliminar() {
+        Usuario usuario = usuarioService.crear(new Usuario("cache2", "clave1", RolUsuario.USER));
+        assertTrue(autenticar("cache2", "clave1").isAuthenticated());
+
+        Usuario cambio = usuarioRepository.findById(usuario.getId()).orElseThrow();
+        cambio.setPassword("clave2");
+        usuarioService.actualizar(cambio);
+
+        assertThrows(BadCredentialsException.class, () -> autenticar("cache2", "clave1"));
+        assertTrue(autenticar("cache2", "clave2").isAuthenticated());
+
+        usuarioService.eliminar(usuario.getId());
+        assertThrows(BadCredentialsException.class, () -> autenticar("cache2", "clave2"));
+    }
+}
@@ -0,0 +1,98 @@
+package es.santander.ascender.proyectoFinal2.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.santander.ascender.proyectoFinal2.model.RolUsuario;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import es.santander.ascender.proyectoFinal2.repository.UsuarioRepository;
+import es.santander.ascender.proyectoFinal2.service.UsuarioService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Map;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class TokensAccesoTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    private JsonNode login(String username, String password) throws Exception {
+        String respuesta = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("username", username, "password", password))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(respuesta);
+    }
+
+    /**
+     * El token de acceso autentica las peticiones; uno manipulado o de refresco se rechaza.
+     */
+    @Test
+    public void debeAutenticarConElTokenDeAcceso() throws Exception {
+        usuarioService.crear(new Usuario("token1", "clave1", RolUsuario.USER));
+        JsonNode tokens = login("token1", "clave1");
+        String acceso = tokens.get("tokenAcceso").asText();
+
+        mockMvc.perform(get("/api/ventas").header("Authorization", "Bearer " + acceso))
+                .andExpect(status().isOk());
+        // Rol USER: las compras son sólo para administradores
+        mockMvc.perform(get("/api/compras").header("Authorization", "Bearer " + acceso))
+                .andExpect(status().isForbidden());
+
+        String manipulado = acceso.substring(0, acceso.length() - 2) + (acceso.endsWith("A") ? "BB" : "AA");
+        mockMvc.perform(get("/api/ventas").header("Authorization", "Bearer " + manipulado))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/ventas").header("Authorization", "Bearer " + tokens.get("tokenRefresco").asText()))
+                .andExpect(status().isUnauthorized());
+    }
+
+    /**
+     * El token de refresco da un par nuevo mientras la contraseña no cambie.
+     */
+    @Test
+    public void debeRefrescarHastaQueCambieLaContrasena() throws Exception {
+        Usuario usuario = usuarioService.crear(new Usuario("token2", "clave1", RolUsuario.USER));
+        String refresco = login("token2", "clave1").get("tokenRefresco").asText();
+        String peticion = objectMapper.writeValueAsString(Map.of("tokenRefresco", refresco));
+
+        mockMvc.perform(post("/api/auth/refresh").contentType(MediaType.APPLICATION_JSON).content(peticion))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.mensaje").exists())
+                .andExpect(jsonPath("$.tokenAcceso").exists())
+                .andExpect(jsonPath("$.tokenRefresco").exists());
+        // Un cliente que sigue enviando el token de acceso caducado también puede refrescar
+        mockMvc.perform(post("/api/auth/refresh").contentType(MediaType.APPLICATION_JSON).content(peticion)
+                        .header("Authorization", "Bearer caducado"))
+                .andExpect(status().isOk());
+
+        Usuario cambio = usuarioRepository.findById(usuario.getId()).orElseThrow();
+        cambio.setPassword("clave2");
+        usuarioService.actualizar(cambio);
+
+        mockMvc.perform(post("/api/auth/refresh").contentType(MediaType.APPLICATION_JSON).content(peticion))
+                .andExpect(status().isUnauthorized());
+    }
+}
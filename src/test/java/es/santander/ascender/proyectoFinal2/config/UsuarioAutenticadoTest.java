@@ -0,0 +1,107 @@
+package es.santander.ascender.proyectoFinal2.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import es.santander.ascender.proyectoFinal2.model.RolUsuario;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import es.santander.ascender.proyectoFinal2.service.UsuarioService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Map;
+
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.articulo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class UsuarioAutenticadoTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    /**
+     * Una venta con token de acceso se asocia al usuario del token sin leerlo de la tabla usuarios.
+     */
+    @Test
+    public void laVentaNoDebeLeerElUsuario() throws Exception {
+        Usuario usuario = usuarioService.crear(new Usuario("principal1", "clave1", RolUsuario.USER));
+        Long articuloId = articuloRepository.save(articulo("PRINCIPAL-0001", 10)).getId();
+        String token = tokenAcceso("principal1", "clave1");
+
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long lecturas = estadisticas.getEntityStatistics(Usuario.class.getName()).getLoadCount();
+
+        String respuesta = mockMvc.perform(post("/api/ventas")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"detalles\":[{\"articulo\":{\"id\":" + articuloId + "},\"cantidad\":2}]}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode venta = objectMapper.readTree(respuesta);
+        assertEquals(usuario.getId(), venta.get("usuario").get("id").asLong());
+        assertEquals("principal1", venta.get("usuario").get("username").asText());
+        assertEquals(lecturas, estadisticas.getEntityStatistics(Usuario.class.getName()).getLoadCount());
+    }
+
+    /**
+     * Un administrador puede registrar compras con su token: el rol se toma del principal.
+     */
+    @Test
+    public void elAdministradorPuedeComprar() throws Exception {
+        Usuario usuario = usuarioService.crear(new Usuario("principal2", "clave2", RolUsuario.ADMIN));
+        Long articuloId = articuloRepository.save(articulo("PRINCIPAL-0002", 10)).getId();
+        String token = tokenAcceso("principal2", "clave2");
+
+        Statistics estadisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long lecturas = estadisticas.getEntityStatistics(Usuario.class.getName()).getLoadCount();
+
+        String respuesta = mockMvc.perform(post("/api/compras")
+                        .header("Authorization", "Bearer " + token)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"detalles\":[{\"articulo\":{\"id\":" + articuloId
+                                + "},\"cantidad\":3,\"precioUnitario\":5.0}]}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode compra = objectMapper.readTree(respuesta);
+        assertEquals(usuario.getId(), compra.get("usuario").get("id").asLong());
+        assertEquals("ADMIN", compra.get("usuario").get("rol").asText());
+        assertEquals(13, articuloRepository.findById(articuloId).orElseThrow().getStock());
+        assertEquals(lecturas, estadisticas.getEntityStatistics(Usuario.class.getName()).getLoadCount());
+    }
+
+    private String tokenAcceso(String username, String password) throws Exception {
+        String login = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("username", username, "password", password))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(login).get("tokenAcceso").asText();
+    }
+}
@@ -0,0 +1,79 @@
+package es.santander.ascender.proyectoFinal2.controller;
+
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import es.santander.ascender.proyectoFinal2.service.ArticuloService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.articulo;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class CatalogoCondicionalTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ArticuloService articuloService;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    /**
+     * Un sondeo con el ETag vigente recibe 304 sin cuerpo; tras una escritura el mismo ETag
+     * ya no vale y se devuelve el catálogo con uno nuevo.
+     */
+    @Test
+    public void debeResponder304MientrasNoCambieElCatalogo() throws Exception {
+        Long id = articuloRepository.save(articulo("CONDICIONAL-0001", 5)).getId();
+
+        String etag = mockMvc.perform(get("/api/articulos"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        mockMvc.perform(get("/api/articulos").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        articuloService.actualizarStock(id, 1);
+
+        String nuevo = mockMvc.perform(get("/api/articulos").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, nuevo);
+    }
+
+    /**
+     * El listado por familia comparte la versión del catálogo.
+     */
+    @Test
+    public void laFamiliaUsaElMismoEtag() throws Exception {
+        articuloRepository.save(articulo("CONDICIONAL-0002", 5));
+        String etag = mockMvc.perform(get("/api/articulos"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/articulos/familia/Pruebas").with(user("tpv"))
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/articulos/familia/Pruebas").with(user("tpv"))
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"otra-version\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+    }
+}
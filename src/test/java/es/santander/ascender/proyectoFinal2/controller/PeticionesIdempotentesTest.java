@@ -0,0 +1,106 @@
+package es.santander.ascender.proyectoFinal2.controller;
+
+import es.santander.ascender.proyectoFinal2.model.RolUsuario;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import es.santander.ascender.proyectoFinal2.model.Venta;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import es.santander.ascender.proyectoFinal2.repository.UsuarioRepository;
+import es.santander.ascender.proyectoFinal2.service.VentaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.articulo;
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.resultadosEnParalelo;
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.venta;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class PeticionesIdempotentesTest {
+
+    private static final int HILOS = 16;
+
+    @Autowired
+    private PeticionesIdempotentes peticionesIdempotentes;
+
+    @Autowired
+    private VentaService ventaService;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    /**
+     * Muchos reintentos simultáneos con la misma clave: la venta se hace una sola vez
+     * y todos reciben la misma venta.
+     */
+    @Test
+    public void losDuplicadosNoRepitenLaVenta() throws Exception {
+        Usuario usuario = usuarioRepository.save(new Usuario("idempotencia", "clave", RolUsuario.USER));
+        Long id = articuloRepository.save(articulo("IDEMPOTENCIA-0001", 100)).getId();
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        List<ResponseEntity<?>> respuestas = resultadosEnParalelo(HILOS, hilo ->
+                peticionesIdempotentes.ejecutar("idempotencia", "POST /api/ventas", "clave-1", List.of(id), () -> {
+                    ejecuciones.incrementAndGet();
+                    return ResponseEntity.status(HttpStatus.CREATED)
+                            .body(ventaService.realizarVenta(venta(usuario, id, 3)));
+                }));
+
+        Long ventaId = ((Venta) respuestas.get(0).getBody()).getId();
+        for (ResponseEntity<?> respuesta : respuestas) {
+            assertEquals(HttpStatus.CREATED, respuesta.getStatusCode());
+            assertEquals(ventaId, ((Venta) respuesta.getBody()).getId());
+        }
+
+        assertEquals(1, ejecuciones.get());
+        assertEquals(97, articuloRepository.findById(id).orElseThrow().getStock());
+    }
+
+    /**
+     * Un conflicto no se guarda, así que el reintento se ejecuta; reutilizar la clave
+     * con otra petición se rechaza.
+     */
+    @Test
+    public void soloSeGuardanLasRespuestasDefinitivas() {
+        AtomicInteger ejecuciones = new AtomicInteger();
+
+        ResponseEntity<?> conflicto = peticionesIdempotentes.ejecutar("idempotencia", "POST /api/compras", "clave-2",
+                List.of(1), () -> {
+                    ejecuciones.incrementAndGet();
+                    return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("mensaje", "conflicto"));
+                });
+        ResponseEntity<?> creada = peticionesIdempotentes.ejecutar("idempotencia", "POST /api/compras", "clave-2",
+                List.of(1), () -> {
+                    ejecuciones.incrementAndGet();
+                    return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", 1));
+                });
+        ResponseEntity<?> repetida = peticionesIdempotentes.ejecutar("idempotencia", "POST /api/compras", "clave-2",
+                List.of(1), () -> {
+                    ejecuciones.incrementAndGet();
+                    return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", 2));
+                });
+        ResponseEntity<?> distinta = peticionesIdempotentes.ejecutar("idempotencia", "POST /api/compras", "clave-2",
+                List.of(2), () -> {
+                    ejecuciones.incrementAndGet();
+                    return ResponseEntity.status(HttpStatus.CREATED).body(Map.of("id", 3));
+                });
+
+        assertEquals(HttpStatus.CONFLICT, conflicto.getStatusCode());
+        assertEquals(HttpStatus.CREATED, creada.getStatusCode());
+        assertEquals(creada.getBody(), repetida.getBody());
+        assertEquals("true", repetida.getHeaders().getFirst(PeticionesIdempotentes.CABECERA_REPETIDA));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, distinta.getStatusCode());
+        assertEquals(2, ejecuciones.get());
+    }
+}
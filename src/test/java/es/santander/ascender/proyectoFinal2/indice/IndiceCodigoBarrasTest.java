@@ -0,0 +1,43 @@
+package es.santander.ascender.proyectoFinal2.indice;
+
+import es.santander.ascender.proyectoFinal2.dto.ArticuloEscaneo;
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.service.ArticuloService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.articulo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class IndiceCodigoBarrasTest {
+
+    @Autowired
+    private IndiceCodigoBarras indice;
+
+    @Autowired
+    private ArticuloService articuloService;
+
+    /**
+     * Las altas, los cambios de stock y las bajas hechos por el servicio se reflejan en el índice
+     * en cuanto se confirman; un código desconocido no se encuentra.
+     */
+    @Test
+    public void debeReflejarLasEscriturasConfirmadas() {
+        Articulo articulo = articuloService.crear(articulo("ESCANEO-0001", 10));
+        assertEquals(10, indice.buscar("ESCANEO-0001").orElseThrow().stock());
+
+        articuloService.actualizarStock(articulo.getId(), -4);
+        assertEquals(6, indice.buscar("ESCANEO-0001").orElseThrow().stock());
+
+        articuloService.borradoLogico(articulo.getId());
+        ArticuloEscaneo borrado = indice.buscar("ESCANEO-0001").orElseThrow();
+        assertTrue(borrado.borrado());
+
+        assertTrue(indice.buscar("ESCANEO-9999").isEmpty());
+    }
+}
@@ -0,0 +1,63 @@
+package es.santander.ascender.proyectoFinal2.indice;
+
+import es.santander.ascender.proyectoFinal2.dto.Sugerencia;
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.service.ArticuloService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class IndiceSugerenciasTest {
+
+    @Autowired
+    private IndiceSugerencias indice;
+
+    @Autowired
+    private ArticuloService articuloService;
+
+    private Articulo crear(String codigoBarras, String nombre) {
+        return articuloService.crear(new Articulo(nombre, "", codigoBarras, "Pruebas", null, 10.0, 5.0, 1));
+    }
+
+    private static List<Long> ids(List<Sugerencia> sugerencias) {
+        return sugerencias.stream().map(Sugerencia::id).toList();
+    }
+
+    /**
+     * Primero los nombres que empiezan por el prefijo, en orden alfabético, y después los códigos de barras.
+     */
+    @Test
+    public void debeSugerirPorNombreYDespuesPorCodigo() {
+        Long segundo = crear("SUGERENCIA-0001", "Yogur natural").getId();
+        Long primero = crear("SUGERENCIA-0002", "yogur griego").getId();
+        Long porCodigo = crear("YOGUR-0003", "Postre lácteo").getId();
+
+        assertEquals(List.of(primero, segundo, porCodigo), ids(indice.buscar("YOGUR", 10)));
+        assertEquals(List.of(primero), ids(indice.buscar("yogur", 1)));
+    }
+
+    /**
+     * Un artículo renombrado sólo se sugiere por el nombre nuevo y uno dado de baja deja de sugerirse.
+     */
+    @Test
+    public void debeReflejarRenombradosYBajas() {
+        Articulo articulo = crear("SUGERENCIA-0004", "Galleta maría");
+        articulo.setNombre("Bizcocho casero");
+        articuloService.actualizar(articulo);
+
+        assertTrue(indice.buscar("galleta m", 10).isEmpty());
+        assertEquals(List.of(articulo.getId()), ids(indice.buscar("bizcocho c", 10)));
+
+        articuloService.borradoLogico(articulo.getId());
+        assertTrue(indice.buscar("bizcocho c", 10).isEmpty());
+        assertTrue(indice.buscar("SUGERENCIA-0004", 10).isEmpty());
+    }
+}
@@ -0,0 +1,134 @@
+package es.santander.ascender.proyectoFinal2.indice;
+
+import es.santander.ascender.proyectoFinal2.event.ArticulosModificadosEvent;
+import es.santander.ascender.proyectoFinal2.event.ArticulosModificadosEvent.TipoCambio;
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import es.santander.ascender.proyectoFinal2.service.ArticuloService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.enParalelo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class IndiceTrigramasTest {
+
+    private static final int HILOS = 8;
+
+    @Autowired
+    private IndiceTrigramas indice;
+
+    @Autowired
+    private ArticuloService articuloService;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    private Articulo crear(String codigoBarras, String nombre, String descripcion) {
+        return articuloService.crear(new Articulo(nombre, descripcion, codigoBarras, "Pruebas", null, 10.0, 5.0, 1));
+    }
+
+    private void renombrar(Long id, String nombre) {
+        Articulo articulo = articuloRepository.findById(id).orElseThrow();
+        articulo.setNombre(nombre);
+        articuloService.actualizar(articulo);
+    }
+
+    /**
+     * Las coincidencias se ordenan por relevancia: al principio del nombre, al principio de una
+     * palabra del nombre, en cualquier parte del nombre y, por último, sólo en la descripción.
+     */
+    @Test
+    public void debeOrdenarPorRelevancia() {
+        Long enDescripcion = crear("TRIGRAMA-0001", "Caja azul", "Contiene un qwertyuio").getId();
+        Long enNombre = crear("TRIGRAMA-0002", "Caja xqwertyuio", "").getId();
+        Long enPalabra = crear("TRIGRAMA-0003", "Caja qwertyuio grande", "").getId();
+        Long alInicio = crear("TRIGRAMA-0004", "Qwertyuio", "").getId();
+
+        assertEquals(List.of(alInicio, enPalabra, enNombre, enDescripcion), indice.buscar("QWERTYUIO", false));
+        assertEquals(List.of(alInicio, enPalabra, enNombre), indice.buscar("qwertyuio", true));
+    }
+
+    /**
+     * Las consultas de una y dos letras también se resuelven con el índice y sólo devuelven
+     * artículos que contienen la subcadena; los que tienen todos los trigramas de la consulta
+     * pero no la subcadena completa no aparecen.
+     */
+    @Test
+    public void debeResolverConsultasCortasYDescartarFalsosPositivos() {
+        Long id = crear("TRIGRAMA-0005", "Ñu zzkj", "").getId();
+        Long otro = crear("TRIGRAMA-0006", "zzkjzz", "").getId();
+
+        assertTrue(indice.buscar("ñ", true).contains(id));
+        assertTrue(indice.buscar("zz", true).containsAll(List.of(id, otro)));
+        assertFalse(indice.buscar("ñ", true).contains(otro));
+        // "zzkjzzk" contiene los trigramas de "zzkjzz" pero no está en ningún nombre
+        assertTrue(indice.buscar("zzkjzzk", true).isEmpty());
+        assertTrue(indice.buscar("  ", true).isEmpty());
+    }
+
+    /**
+     * Los cambios de nombre y las bajas se reflejan en el índice tras confirmarse.
+     */
+    @Test
+    public void debeReflejarRenombradosYBajas() {
+        Long id = crear("TRIGRAMA-0007", "Tornillo plkmnb", "").getId();
+        renombrar(id, "Tuerca wsxedc");
+        assertTrue(indice.buscar("plkmnb", false).isEmpty());
+        assertEquals(List.of(id), indice.buscar("wsxedc", false));
+
+        articuloService.borradoLogico(id);
+        assertTrue(indice.buscar("wsxedc", false).isEmpty());
+    }
+
+    /**
+     * Renombrados del mismo artículo mientras otros hilos recargan el índice: el índice acaba con el
+     * último nombre confirmado y no con el de una recarga más antigua aplicada después.
+     */
+    @Test
+    public void noDebeQuedarseConUnNombreAntiguo() throws Exception {
+        Long id = crear("TRIGRAMA-0008", "Inicial", "").getId();
+        CountDownLatch renombrando = new CountDownLatch(HILOS / 2);
+
+        enParalelo(HILOS, hilo -> {
+            if (hilo >= HILOS / 2) {
+                while (renombrando.getCount() > 0) {
+                    indice.alModificarArticulos(ArticulosModificadosEvent.de(id, TipoCambio.MODIFICACION));
+                }
+                return;
+            }
+            for (int i = 0; i < 10; i++) {
+                while (true) {
+                    try {
+                        renombrar(id, "marca" + hilo + "x" + i + "fin");
+                        break;
+                    } catch (ObjectOptimisticLockingFailureException e) {
+                        // Otro hilo lo ha modificado entretanto: se vuelve a leer
+                    }
+                }
+            }
+            renombrando.countDown();
+        });
+
+        String nombre = articuloRepository.findById(id).orElseThrow().getNombre();
+        assertEquals(List.of(id), indice.buscar(nombre, true));
+        for (int hilo = 0; hilo < HILOS / 2; hilo++) {
+            for (int i = 0; i < 10; i++) {
+                String antiguo = "marca" + hilo + "x" + i + "fin";
+                if (!antiguo.equalsIgnoreCase(nombre)) {
+                    assertFalse(indice.buscar(antiguo, true).contains(id), antiguo);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package es.santander.ascender.proyectoFinal2.inventario;
+
+import es.santander.ascender.proyectoFinal2.dto.Reserva;
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.model.RolUsuario;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import es.santander.ascender.proyectoFinal2.repository.UsuarioRepository;
+import es.santander.ascender.proyectoFinal2.service.ArticuloService;
+import es.santander.ascender.proyectoFinal2.service.ReservaService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.articulo;
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.enParalelo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "inventario.stock.motor=memoria",
+        "inventario.stock.intervalo-volcado=PT1H",
+        "inventario.stock.diario.directorio=${java.io.tmpdir}/diario-stock-${random.uuid}"
+})
+@ActiveProfiles("test")
+public class MotorStockMemoriaTest {
+
+    private static final int HILOS = 16;
+
+    @Autowired
+    private MotorStockMemoria motor;
+
+    @Autowired
+    private ArticuloService articuloService;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @Autowired
+    private ReservaService reservaService;
+
+    @Autowired
+    private RetencionesStock retencionesStock;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    /**
+     * Muchos hilos venden el mismo artículo: el motor no debe aceptar más unidades que el stock
+     * y, tras el volcado, la tabla debe reflejar exactamente lo vendido.
+     */
+    @Test
+    public void noDebeVenderMasDelStockYDebeVolcarloEnLaTabla() throws Exception {
+        Articulo articulo = articuloRepository.save(articulo("MOTOR-0001", 100));
+        AtomicInteger aceptadas = new AtomicInteger();
+        enParalelo(HILOS, hilo -> {
+            for (int j = 0; j < 20; j++) {
+                try {
+                    articuloService.actualizarStock(articulo.getId(), -1);
+                    aceptadas.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    // Sin stock
+                }
+            }
+        });
+
+        assertEquals(100, aceptadas.get());
+        assertEquals(0, motor.disponible(articulo.getId()).orElseThrow());
+        motor.volcar();
+        assertEquals(0, articuloRepository.findById(articulo.getId()).orElseThrow().getStock());
+    }
+
+    /**
+     * Los cambios confirmados pero no volcados están en el diario: al recuperar (como tras un reinicio)
+     * deben llegar a la tabla una sola vez.
+     */
+    @Test
+    public void debeRecuperarLosCambiosNoVolcadosDelDiario() throws Exception {
+        Articulo articulo = articuloRepository.save(articulo("MOTOR-0002", 50));
+        articuloService.actualizarStock(articulo.getId(), -5);
+        articuloService.actualizarStock(articulo.getId(), -5);
+        articuloService.actualizarStock(articulo.getId(), 3);
+        assertEquals(50, articuloRepository.findById(articulo.getId()).orElseThrow().getStock());
+
+        motor.recuperar();
+        assertEquals(43, articuloRepository.findById(articulo.getId()).orElseThrow().getStock());
+        assertEquals(43, motor.disponible(articulo.getId()).orElseThrow());
+
+        // Un segundo arranque no debe volver a aplicar los mismos segmentos
+        motor.recuperar();
+        motor.volcar();
+        assertEquals(43, articuloRepository.findById(articulo.getId()).orElseThrow().getStock());
+    }
+
+    /**
+     * Con el motor en memoria las ventas también respetan las reservas: una reserva concedida
+     * siempre se puede confirmar aunque otros hilos vendan el mismo artículo.
+     */
+    @Test
+    public void lasVentasNoConsumenUnidadesReservadas() throws Exception {
+        Usuario usuario = usuarioRepository.save(new Usuario("motor1", "clave", RolUsuario.USER));
+        Articulo articulo = articuloRepository.save(articulo("MOTOR-0003", 200));
+        AtomicInteger vendidas = new AtomicInteger();
+        AtomicInteger confirmadas = new AtomicInteger();
+        Queue<String> fallidas = new ConcurrentLinkedQueue<>();
+
+        enParalelo(HILOS, hilo -> {
+            for (int i = 0; i < 30; i++) {
+                if (hilo % 2 == 0) {
+                    try {
+                        articuloService.actualizarStock(articulo.getId(), -1);
+                        vendidas.incrementAndGet();
+                    } catch (IllegalArgumentException e) {
+                        // Sin stock
+                    }
+                    continue;
+                }
+                Reserva reserva;
+                try {
+                    reserva = reservaService.crear(usuario, Map.of(articulo.getId(), 2), null);
+                } catch (IllegalStateException e) {
+                    continue;
+                }
+                try {
+                    reservaService.confirmar(reserva.id(), usuario);
+                    confirmadas.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    fallidas.add(e.getMessage());
+                }
+            }
+        });
+
+        assertTrue(fallidas.isEmpty(), () -> "Confirmaciones fallidas: " + fallidas);
+        assertEquals(0, retencionesStock.retenido(articulo.getId()));
+        assertEquals(200 - vendidas.get() - 2 * confirmadas.get(), motor.disponible(articulo.getId()).orElseThrow());
+    }
+
+    /**
+     * Si ya se han volcado segmentos y el directorio configurado no tiene el diario (otra ruta,
+     * ficheros borrados), el arranque falla en lugar de seguir sin los cambios no volcados.
+     */
+    @Test
+    public void noDebeArrancarSinElDiarioDeLaEjecucionAnterior() throws Exception {
+        Articulo articulo = articuloRepository.save(articulo("MOTOR-0004", 10));
+        articuloService.actualizarStock(articulo.getId(), -1);
+        motor.volcar();
+
+        Object directorio = ReflectionTestUtils.getField(motor, "directorio");
+        Object diario = ReflectionTestUtils.getField(motor, "diario");
+        try {
+            ReflectionTestUtils.setField(motor, "directorio", Files.createTempDirectory("diario-vacio"));
+            ReflectionTestUtils.setField(motor, "diario", null);
+            assertThrows(IllegalStateException.class, motor::recuperar);
+        } finally {
+            ReflectionTestUtils.setField(motor, "directorio", directorio);
+            ReflectionTestUtils.setField(motor, "diario", diario);
+        }
+        motor.recuperar();
+        assertEquals(9, articuloRepository.findById(articulo.getId()).orElseThrow().getStock());
+    }
+}
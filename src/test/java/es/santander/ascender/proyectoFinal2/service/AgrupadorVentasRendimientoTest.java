@@ -0,0 +1,91 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.model.RolUsuario;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import es.santander.ascender.proyectoFinal2.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.articulo;
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.enParalelo;
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.venta;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark manual que compara un commit por venta con el commit agrupado. No forma parte
+ * de la batería normal: se lanza con -Dtests.skip=false -Dbenchmark=true -Dtest=AgrupadorVentasRendimientoTest
+ * La base de datos se guarda en fichero para que cada commit escriba en disco, como en producción.
+ * Las cifras salen en el log; la prueba sólo falla si el commit agrupado no supera al individual.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:file:./target/rendimiento-ventas/bd",
+        "ventas.agrupacion.habilitada=true",
+        "spring.jpa.show-sql=false"
+})
+@ActiveProfiles("test")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class AgrupadorVentasRendimientoTest {
+
+    private static final Logger log = LoggerFactory.getLogger(AgrupadorVentasRendimientoTest.class);
+
+    private static final int HILOS = 16;
+
+    private static final int VENTAS_POR_HILO = 200;
+
+    @Autowired
+    private AgrupadorVentas agrupadorVentas;
+
+    @Autowired
+    private VentaService ventaService;
+
+    @Autowired
+    private ReintentosConcurrencia reintentos;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    // Devuelve las ventas por segundo conseguidas con HILOS clientes simultáneos
+    private double medir(int ventasPorHilo, IntConsumer vender) throws Exception {
+        long inicio = System.nanoTime();
+        enParalelo(HILOS, hilo -> {
+            for (int i = 0; i < ventasPorHilo; i++) {
+                vender.accept(hilo);
+            }
+        });
+        return HILOS * ventasPorHilo / ((System.nanoTime() - inicio) / 1e9);
+    }
+
+    @Test
+    public void compararRendimiento() throws Exception {
+        Usuario usuario = usuarioRepository.save(new Usuario("agrupador-rendimiento", "clave", RolUsuario.USER));
+        List<Long> ids = new ArrayList<>();
+        for (int h = 0; h < HILOS; h++) {
+            ids.add(articuloRepository.save(articulo("RENDIMIENTO-" + h, 1_000_000)).getId());
+        }
+        IntConsumer porVenta = hilo -> reintentos.ejecutar(() -> ventaService.realizarVenta(venta(usuario, ids.get(hilo), 1)));
+        IntConsumer agrupado = hilo -> agrupadorVentas.realizar(venta(usuario, ids.get(hilo), 1));
+
+        // Calentamiento de ambos caminos
+        medir(20, porVenta);
+        medir(20, agrupado);
+
+        double individual = medir(VENTAS_POR_HILO, porVenta);
+        double lotes = medir(VENTAS_POR_HILO, agrupado);
+        log.info("Un commit por venta: {} ventas/s | commit agrupado: {} ventas/s (x{})",
+                String.format("%.0f", individual), String.format("%.0f", lotes), String.format("%.2f", lotes / individual));
+        assertTrue(lotes > individual, "El commit agrupado debería conseguir más ventas por segundo");
+    }
+}
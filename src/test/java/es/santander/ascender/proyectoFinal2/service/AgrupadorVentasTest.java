@@ -0,0 +1,125 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.model.RolUsuario;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import es.santander.ascender.proyectoFinal2.model.Venta;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import es.santander.ascender.proyectoFinal2.repository.UsuarioRepository;
+import es.santander.ascender.proyectoFinal2.service.VentaService.ResultadoVenta;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.articulo;
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.enParalelo;
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.venta;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(properties = {
+        "ventas.agrupacion.habilitada=true",
+        "ventas.agrupacion.espera-maxima=PT0.002S"
+})
+@ActiveProfiles("test")
+public class AgrupadorVentasTest {
+
+    private static final int HILOS = 16;
+
+    @Autowired
+    private AgrupadorVentas agrupadorVentas;
+
+    @Autowired
+    private VentaService ventaService;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    // Lanza ventasPorHilo ventas de una unidad desde cada hilo y devuelve cuántas se han aceptado
+    private int venderEnParalelo(int ventasPorHilo, Function<Integer, Venta> operacion) throws Exception {
+        AtomicInteger aceptadas = new AtomicInteger();
+        enParalelo(HILOS, hilo -> {
+            for (int i = 0; i < ventasPorHilo; i++) {
+                try {
+                    operacion.apply(hilo);
+                    aceptadas.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    // Venta rechazada por falta de stock
+                }
+            }
+        });
+        return aceptadas.get();
+    }
+
+    /**
+     * Las ventas rechazadas de un lote no afectan a las demás: se aceptan exactamente
+     * tantas como stock había y cada petición recibe su propio resultado.
+     */
+    @Test
+    public void cadaVentaDelLoteRecibeSuResultado() throws Exception {
+        Usuario usuario = usuarioRepository.save(new Usuario("agrupador", "clave", RolUsuario.USER));
+        Long id = articuloRepository.save(articulo("AGRUPADO-0001", 100)).getId();
+
+        int aceptadas = venderEnParalelo(10, hilo -> agrupadorVentas.realizar(venta(usuario, id, 1)));
+
+        assertEquals(100, aceptadas);
+        assertEquals(0, articuloRepository.findById(id).orElseThrow().getStock());
+    }
+
+    /**
+     * Dentro de un lote cada venta sólo puede usar el stock que no han tomado las anteriores:
+     * el rechazo se atribuye a la venta que ya no cabe, no al lote entero.
+     */
+    @Test
+    public void elRechazoSeAtribuyeALaVentaQueNoCabe() {
+        Usuario usuario = usuarioRepository.save(new Usuario("agrupador2", "clave", RolUsuario.USER));
+        Long id = articuloRepository.save(articulo("AGRUPADO-0002", 3)).getId();
+
+        List<ResultadoVenta> resultados = ventaService.realizarVentas(List.of(
+                venta(usuario, id, 2), venta(usuario, id, 2), venta(usuario, id, 1)));
+
+        assertNull(resultados.get(0).error());
+        assertNotNull(resultados.get(1).error());
+        assertNull(resultados.get(2).error());
+        assertNotNull(resultados.get(2).venta().getId());
+        assertEquals(0, articuloRepository.findById(id).orElseThrow().getStock());
+    }
+
+    /**
+     * Lotes simultáneos con ventas de los mismos artículos en orden contrario (B y luego A frente a
+     * A y luego B): el stock del lote se descuenta en un único pase en orden canónico, así que los
+     * lotes no se interbloquean y el stock cuadra.
+     */
+    @Test
+    public void lotesConOrdenCruzadoNoSeInterbloquean() throws Exception {
+        Usuario usuario = usuarioRepository.save(new Usuario("agrupador3", "clave", RolUsuario.USER));
+        Long a = articuloRepository.save(articulo("AGRUPADO-0003", 1000)).getId();
+        Long b = articuloRepository.save(articulo("AGRUPADO-0004", 1000)).getId();
+        AtomicInteger aceptadas = new AtomicInteger();
+
+        enParalelo(HILOS, hilo -> {
+            for (int i = 0; i < 20; i++) {
+                List<Venta> lote = hilo % 2 == 0
+                        ? List.of(venta(usuario, b, 1), venta(usuario, a, 1))
+                        : List.of(venta(usuario, a, 1), venta(usuario, b, 1));
+                for (ResultadoVenta resultado : ventaService.realizarVentas(lote)) {
+                    if (resultado.error() == null) {
+                        aceptadas.incrementAndGet();
+                    }
+                }
+            }
+        });
+
+        assertEquals(HILOS * 20 * 2, aceptadas.get());
+        assertEquals(1000 - HILOS * 20, articuloRepository.findById(a).orElseThrow().getStock());
+        assertEquals(1000 - HILOS * 20, articuloRepository.findById(b).orElseThrow().getStock());
+    }
+}
@@ -0,0 +1,112 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.articulo;
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.enParalelo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class ArticuloServiceConcurrenciaTest {
+
+    private static final int HILOS = 16;
+
+    @Autowired
+    private ArticuloService articuloService;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    /**
+     * Muchos hilos descuentan unidades del mismo artículo a la vez:
+     * el stock final debe ser exacto, sin actualizaciones perdidas.
+     */
+    @Test
+    public void debeMantenerStockExactoConDecrementosConcurrentes() throws Exception {
+        Articulo articulo = articuloRepository.save(articulo("CONC-0001", 1000));
+        int operacionesPorHilo = 50;
+
+        enParalelo(HILOS, hilo -> {
+            for (int i = 0; i < operacionesPorHilo; i++) {
+                articuloService.actualizarStock(articulo.getId(), -1);
+            }
+        });
+
+        int stockFinal = articuloRepository.findById(articulo.getId()).orElseThrow().getStock();
+        assertEquals(1000 - HILOS * operacionesPorHilo, stockFinal);
+    }
+
+    /**
+     * Se intentan vender más unidades de las que hay: sólo deben aceptarse
+     * tantas operaciones como stock inicial y el stock nunca debe quedar negativo.
+     */
+    @Test
+    public void noDebeVenderMasDelStockDisponible() throws Exception {
+        Articulo articulo = articuloRepository.save(articulo("CONC-0002", 100));
+        int intentosPorHilo = 20;
+        AtomicInteger aceptadas = new AtomicInteger();
+        AtomicInteger rechazadas = new AtomicInteger();
+
+        enParalelo(HILOS, hilo -> {
+            for (int i = 0; i < intentosPorHilo; i++) {
+                try {
+                    articuloService.actualizarStock(articulo.getId(), -1);
+                    aceptadas.incrementAndGet();
+                } catch (IllegalArgumentException e) {
+                    rechazadas.incrementAndGet();
+                }
+            }
+        });
+
+        int stockFinal = articuloRepository.findById(articulo.getId()).orElseThrow().getStock();
+        assertEquals(100, aceptadas.get());
+        assertEquals(HILOS * intentosPorHilo - 100, rechazadas.get());
+        assertEquals(0, stockFinal);
+    }
+
+    /**
+     * Una edición preparada antes de una venta se acepta, pero no sobrescribe el stock que ésta ha
+     * descontado: los cambios de stock no mueven la versión y la edición no escribe el stock.
+     */
+    @Test
+    public void laEdicionNoDebePisarElStockVendido() {
+        Articulo articulo = articuloRepository.save(articulo("CONC-0003", 10));
+        Articulo edicion = articuloRepository.findById(articulo.getId()).orElseThrow();
+        edicion.setPrecioVenta(12.0);
+
+        articuloService.actualizarStock(articulo.getId(), -3);
+        articuloService.actualizar(edicion);
+
+        Articulo actual = articuloRepository.findById(articulo.getId()).orElseThrow();
+        assertEquals(7, actual.getStock());
+        assertEquals(12.0, actual.getPrecioVenta());
+    }
+
+    /**
+     * Dos ediciones preparadas sobre la misma versión: la segunda se rechaza en lugar de
+     * sobrescribir los datos de la primera.
+     */
+    @Test
+    public void debeRechazarEdicionConVersionDesfasada() {
+        Articulo articulo = articuloRepository.save(articulo("CONC-0004", 10));
+        Articulo primera = articuloRepository.findById(articulo.getId()).orElseThrow();
+        Articulo segunda = articuloRepository.findById(articulo.getId()).orElseThrow();
+        primera.setPrecioVenta(12.0);
+        segunda.setPrecioVenta(14.0);
+
+        articuloService.actualizar(primera);
+
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> articuloService.actualizar(segunda));
+        assertEquals(12.0, articuloRepository.findById(articulo.getId()).orElseThrow().getPrecioVenta());
+    }
+}
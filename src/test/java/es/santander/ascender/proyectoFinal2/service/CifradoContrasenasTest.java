@@ -0,0 +1,72 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.config.CalibracionBCrypt;
+import es.santander.ascender.proyectoFinal2.model.RolUsuario;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import es.santander.ascender.proyectoFinal2.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.enParalelo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "seguridad.hash.hilos=1",
+        "seguridad.hash.capacidad=1"
+})
+@ActiveProfiles("test")
+public class CifradoContrasenasTest {
+
+    private static final int HILOS = 16;
+
+    @Autowired
+    private UsuarioService usuarioService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    /**
+     * Una ráfaga de altas no espera en cola más allá de la capacidad: las que sobran se rechazan
+     * al momento y las aceptadas quedan guardadas con la contraseña cifrada.
+     */
+    @Test
+    public void debeRechazarLasAltasQueNoCabenEnLaCola() throws Exception {
+        AtomicInteger creados = new AtomicInteger();
+        AtomicInteger rechazados = new AtomicInteger();
+        enParalelo(HILOS, hilo -> {
+            try {
+                usuarioService.crear(new Usuario("rafaga" + hilo, "clave", RolUsuario.USER));
+                creados.incrementAndGet();
+            } catch (RejectedExecutionException e) {
+                rechazados.incrementAndGet();
+            }
+        });
+
+        assertTrue(rechazados.get() > 0);
+        assertEquals(HILOS, creados.get() + rechazados.get());
+        Usuario guardado = usuarioRepository.findAll().stream()
+                .filter(u -> u.getUsername().startsWith("rafaga")).findFirst().orElseThrow();
+        assertTrue(passwordEncoder.matches("clave", guardado.getPassword()));
+    }
+
+    /**
+     * La fuerza calibrada se acerca al tiempo objetivo y siempre queda entre la mínima y la máxima.
+     */
+    @Test
+    public void laFuerzaCalibradaDebeQuedarEnElIntervalo() {
+        assertEquals(12, CalibracionBCrypt.fuerza(Duration.ofMillis(200), Duration.ofMillis(50)));
+        assertEquals(CalibracionBCrypt.MINIMA, CalibracionBCrypt.fuerza(Duration.ofMillis(1), Duration.ofMillis(50)));
+        assertEquals(CalibracionBCrypt.MAXIMA, CalibracionBCrypt.fuerza(Duration.ofSeconds(60), Duration.ofMillis(1)));
+    }
+}
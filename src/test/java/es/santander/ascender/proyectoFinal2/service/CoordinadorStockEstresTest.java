@@ -0,0 +1,156 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.model.Compra;
+import es.santander.ascender.proyectoFinal2.model.DetalleCompra;
+import es.santander.ascender.proyectoFinal2.model.DetalleVenta;
+import es.santander.ascender.proyectoFinal2.model.RolUsuario;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import es.santander.ascender.proyectoFinal2.model.Venta;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import es.santander.ascender.proyectoFinal2.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.articulo;
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.enParalelo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Muchas ventas y compras simultáneas con cestas aleatorias que comparten artículos en distinto orden.
+ * Cualquier interbloqueo o espera de bloqueo agotada hace fallar la prueba (no hay reintentos a este
+ * nivel), y al final el stock de cada artículo debe cuadrar exactamente con las operaciones aceptadas.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class CoordinadorStockEstresTest {
+
+    private static final int HILOS = 16;
+    private static final int OPERACIONES_POR_HILO = 40;
+    private static final int ARTICULOS = 6;
+    private static final int STOCK_INICIAL = 150;
+
+    @Autowired
+    private VentaService ventaService;
+
+    @Autowired
+    private CompraService compraService;
+
+    @Autowired
+    private ArticuloService articuloService;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    @Test
+    public void cestasSolapadasNoProducenInterbloqueosNiVentasSinStock() throws Exception {
+        Usuario usuario = usuarioRepository.save(new Usuario("estres-stock", "clave", RolUsuario.ADMIN));
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ARTICULOS; i++) {
+            ids.add(articuloRepository.save(articulo("ESTRES-" + i, STOCK_INICIAL)).getId());
+        }
+
+        // Unidades vendidas y compradas con éxito de cada artículo
+        AtomicIntegerArray vendidas = new AtomicIntegerArray(ARTICULOS);
+        AtomicIntegerArray compradas = new AtomicIntegerArray(ARTICULOS);
+
+        enParalelo(HILOS, hilo -> {
+            ThreadLocalRandom azar = ThreadLocalRandom.current();
+            for (int op = 0; op < OPERACIONES_POR_HILO; op++) {
+                // Cesta de 2 a 5 artículos distintos en orden aleatorio
+                List<Integer> posiciones = new ArrayList<>();
+                for (int i = 0; i < ARTICULOS; i++) {
+                    posiciones.add(i);
+                }
+                Collections.shuffle(posiciones, azar);
+                List<Integer> cesta = posiciones.subList(0, 2 + azar.nextInt(4));
+                int[] cantidades = new int[cesta.size()];
+                for (int i = 0; i < cantidades.length; i++) {
+                    cantidades[i] = 1 + azar.nextInt(3);
+                }
+
+                if (azar.nextInt(4) == 0) {
+                    comprar(usuario, ids, cesta, cantidades);
+                    for (int i = 0; i < cesta.size(); i++) {
+                        compradas.addAndGet(cesta.get(i), cantidades[i]);
+                    }
+                } else {
+                    try {
+                        vender(usuario, ids, cesta, cantidades);
+                        for (int i = 0; i < cesta.size(); i++) {
+                            vendidas.addAndGet(cesta.get(i), cantidades[i]);
+                        }
+                    } catch (IllegalStateException e) {
+                        // Venta rechazada por falta de stock: es un resultado válido
+                    }
+                }
+            }
+        });
+
+        for (int i = 0; i < ARTICULOS; i++) {
+            int stock = articuloRepository.findById(ids.get(i)).orElseThrow().getStock();
+            assertTrue(stock >= 0, "Stock negativo en el artículo " + i);
+            assertEquals(STOCK_INICIAL + compradas.get(i) - vendidas.get(i), stock);
+        }
+    }
+
+    /**
+     * Si una línea no cabe no se escribe ninguna: las demás filas no cambian ni de versión ni de
+     * secuencia, así que no provocan conflictos a los editores ni aparecen en el feed de cambios.
+     */
+    @Test
+    public void unaCestaRechazadaNoModificaNingunArticulo() {
+        Articulo conStock = articuloRepository.save(articulo("ESTRES-RECHAZO-1", 10));
+        Articulo sinStock = articuloRepository.save(articulo("ESTRES-RECHAZO-2", 1));
+
+        List<Long> rechazados = articuloService.actualizarStockEnLote(
+                Map.of(conStock.getId(), -1, sinStock.getId(), -5));
+
+        assertEquals(List.of(sinStock.getId()), rechazados);
+        Articulo actual = articuloRepository.findById(conStock.getId()).orElseThrow();
+        assertEquals(10, actual.getStock());
+        assertEquals(conStock.getVersion(), actual.getVersion());
+        assertEquals(conStock.getSecuenciaCambio(), actual.getSecuenciaCambio());
+    }
+
+    private void vender(Usuario usuario, List<Long> ids, List<Integer> cesta, int[] cantidades) {
+        Venta venta = new Venta(usuario);
+        for (int i = 0; i < cesta.size(); i++) {
+            DetalleVenta detalle = new DetalleVenta();
+            detalle.setArticulo(referencia(ids.get(cesta.get(i))));
+            detalle.setCantidad(cantidades[i]);
+            venta.getDetalles().add(detalle);
+        }
+        ventaService.realizarVenta(venta);
+    }
+
+    private void comprar(Usuario usuario, List<Long> ids, List<Integer> cesta, int[] cantidades) {
+        Compra compra = new Compra(usuario);
+        for (int i = 0; i < cesta.size(); i++) {
+            DetalleCompra detalle = new DetalleCompra();
+            detalle.setArticulo(referencia(ids.get(cesta.get(i))));
+            detalle.setCantidad(cantidades[i]);
+            compra.getDetalles().add(detalle);
+        }
+        compraService.realizarCompra(compra);
+    }
+
+    private static Articulo referencia(Long id) {
+        Articulo articulo = new Articulo();
+        articulo.setId(id);
+        return articulo;
+    }
+}
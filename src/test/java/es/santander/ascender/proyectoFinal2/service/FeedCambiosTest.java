@@ -0,0 +1,111 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.dto.PaginaCambios;
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import es.santander.ascender.proyectoFinal2.repository.SecuenciaCambios;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.articulo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class FeedCambiosTest {
+
+    @Autowired
+    private ArticuloService articuloService;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @Autowired
+    private SecuenciaCambios secuenciaCambios;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private static List<Long> ids(PaginaCambios pagina) {
+        return pagina.articulos().stream().map(Articulo::getId).toList();
+    }
+
+    /**
+     * Una transacción abierta frena el feed en el valor anterior al suyo aunque otra posterior ya
+     * se haya confirmado; al cerrarse, la siguiente consulta devuelve los dos cambios.
+     */
+    @Test
+    public void elFeedNoSaltaUnaTransaccionEnCurso() throws Exception {
+        Long abiertoId = articuloRepository.save(articulo("FEED-ABIERTO", 5)).getId();
+        Long confirmadoId = articuloRepository.save(articulo("FEED-CONFIRMADO", 5)).getId();
+        long base = secuenciaCambios.limiteConfirmado();
+
+        CountDownLatch abierta = new CountDownLatch(1);
+        CountDownLatch cerrar = new CountDownLatch(1);
+        AtomicLong secuenciaAbierta = new AtomicLong();
+        Thread hilo = new Thread(() -> transactionTemplate.executeWithoutResult(estado -> {
+            articuloService.actualizarStock(abiertoId, 1);
+            secuenciaAbierta.set(articuloRepository.findById(abiertoId).orElseThrow().getSecuenciaCambio());
+            abierta.countDown();
+            try {
+                cerrar.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        hilo.start();
+        try {
+            assertTrue(abierta.await(30, TimeUnit.SECONDS));
+            articuloService.actualizarStock(confirmadoId, 1);
+            long secuenciaConfirmada = articuloRepository.findById(confirmadoId).orElseThrow().getSecuenciaCambio();
+            assertTrue(secuenciaConfirmada > secuenciaAbierta.get());
+
+            PaginaCambios parcial = articuloService.listarCambios(base, 100);
+            assertTrue(parcial.hasta() < secuenciaAbierta.get());
+            assertFalse(ids(parcial).contains(abiertoId));
+            assertFalse(ids(parcial).contains(confirmadoId));
+        } finally {
+            cerrar.countDown();
+            hilo.join();
+        }
+
+        PaginaCambios resto = articuloService.listarCambios(base, 100);
+        assertTrue(ids(resto).containsAll(List.of(abiertoId, confirmadoId)));
+        assertTrue(resto.completo());
+    }
+
+    /**
+     * Con más cambios que el límite la página termina en la secuencia de su último artículo,
+     * y la siguiente continúa justo después sin repetir ninguno.
+     */
+    @Test
+    public void debePaginarPorSecuencia() {
+        long base = secuenciaCambios.limiteConfirmado();
+        Long primero = articuloRepository.save(articulo("FEED-PAGINA-1", 1)).getId();
+        Long segundo = articuloRepository.save(articulo("FEED-PAGINA-2", 1)).getId();
+        Long tercero = articuloRepository.save(articulo("FEED-PAGINA-3", 1)).getId();
+
+        PaginaCambios primera = articuloService.listarCambios(base, 2);
+        assertEquals(List.of(primero, segundo), ids(primera));
+        assertFalse(primera.completo());
+        assertEquals(primera.articulos().get(1).getSecuenciaCambio(), primera.hasta());
+
+        PaginaCambios ultima = articuloService.listarCambios(primera.hasta(), 2);
+        assertTrue(ids(ultima).contains(tercero));
+        assertTrue(ultima.completo());
+
+        assertThrows(IllegalArgumentException.class, () -> articuloService.listarCambios(-1, 10));
+        assertThrows(IllegalArgumentException.class, () -> articuloService.listarCambios(0, 0));
+    }
+}
@@ -0,0 +1,97 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.model.Compra;
+import es.santander.ascender.proyectoFinal2.model.DetalleCompra;
+import es.santander.ascender.proyectoFinal2.model.DetalleVenta;
+import es.santander.ascender.proyectoFinal2.model.RolUsuario;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import es.santander.ascender.proyectoFinal2.model.Venta;
+import es.santander.ascender.proyectoFinal2.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class HistoricoStockServiceTest {
+
+    @Autowired
+    private HistoricoStockService historicoStockService;
+
+    @Autowired
+    private ArticuloService articuloService;
+
+    @Autowired
+    private VentaService ventaService;
+
+    @Autowired
+    private CompraService compraService;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    private Venta vender(Usuario usuario, Articulo articulo, int cantidad) {
+        Venta venta = new Venta(usuario);
+        DetalleVenta detalle = new DetalleVenta();
+        detalle.setArticulo(articulo);
+        detalle.setCantidad(cantidad);
+        venta.getDetalles().add(detalle);
+        return ventaService.realizarVenta(venta);
+    }
+
+    private Compra comprar(Usuario usuario, Articulo articulo, int cantidad) {
+        Compra compra = new Compra(usuario);
+        DetalleCompra detalle = new DetalleCompra();
+        detalle.setArticulo(articulo);
+        detalle.setCantidad(cantidad);
+        compra.getDetalles().add(detalle);
+        return compraService.realizarCompra(compra);
+    }
+
+    // Marca de tiempo entre dos operaciones, con margen para que no coincida con ninguna de ellas
+    private static LocalDateTime marca() throws InterruptedException {
+        Thread.sleep(5);
+        LocalDateTime marca = LocalDateTime.now();
+        Thread.sleep(5);
+        return marca;
+    }
+
+    /**
+     * El stock en cada fecha se reconstruye igual antes y después de guardar una instantánea,
+     * y anular una venta no borra su salida del historial.
+     */
+    @Test
+    public void debeReconstruirElStockEnCualquierFecha() throws Exception {
+        Usuario usuario = usuarioRepository.save(new Usuario("historico", "clave", RolUsuario.USER));
+        Articulo articulo = articuloService.crear(new Articulo("Articulo historico", "Prueba del historico",
+                "HISTORICO-0001", "Pruebas", null, 10.0, 5.0, 10));
+        LocalDateTime trasAlta = marca();
+        Venta venta = vender(usuario, articulo, 3);
+        LocalDateTime trasVenta = marca();
+        comprar(usuario, articulo, 5);
+        LocalDateTime trasCompra = marca();
+
+        historicoStockService.generarInstantaneas(trasCompra);
+
+        ventaService.anularVenta(venta.getId());
+        LocalDateTime trasAnulacion = marca();
+
+        Long id = articulo.getId();
+        assertEquals(10, historicoStockService.stockEnFecha(id, trasAlta).stock());
+        assertEquals(7, historicoStockService.stockEnFecha(id, trasVenta).stock());
+        assertEquals(12, historicoStockService.stockEnFecha(id, trasCompra).stock());
+        assertEquals(15, historicoStockService.stockEnFecha(id, trasAnulacion).stock());
+
+        historicoStockService.generarInstantaneas(trasAnulacion);
+
+        assertEquals(7, historicoStockService.stockEnFecha(id, trasVenta).stock());
+        assertEquals(15, historicoStockService.stockEnFecha(id, trasAnulacion).stock());
+        assertEquals(15, (int) articuloService.buscarPorId(id).orElseThrow().getStock());
+    }
+}
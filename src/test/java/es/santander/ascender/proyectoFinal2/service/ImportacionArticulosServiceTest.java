@@ -0,0 +1,108 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.dto.InformeImportacion;
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class ImportacionArticulosServiceTest {
+
+    private static final String CABECERA = "nombre,codigoBarras,familia,precioVenta,precioCompra,stock,descripcion\n";
+
+    @Autowired
+    private ImportacionArticulosService importacion;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    private InformeImportacion importar(String csv) throws Exception {
+        return importacion.importar(new StringReader(csv));
+    }
+
+    private Articulo buscar(String codigoBarras) {
+        return articuloRepository.findByCodigoBarras(codigoBarras).orElseThrow();
+    }
+
+    /**
+     * Los campos entre comillas pueden contener el separador y comillas dobles escapadas.
+     */
+    @Test
+    public void debeDividirRespetandoLasComillas() {
+        assertEquals(List.of("a", "b,c", "d \"e\"", ""),
+                ImportacionArticulosService.dividir("a,\"b,c\",\"d \"\"e\"\"\",", ','));
+        assertEquals(List.of("1,5", "x"), ImportacionArticulosService.dividir("1,5;x", ';'));
+        assertThrows(IllegalArgumentException.class, () -> ImportacionArticulosService.dividir("a,\"b", ','));
+    }
+
+    /**
+     * Con ';' como separador la coma es el separador decimal; se admiten BOM y finales de línea CRLF.
+     */
+    @Test
+    public void debeImportarConPuntoYComaYComaDecimal() throws Exception {
+        InformeImportacion informe = importar("﻿nombre;codigoBarras;familia;precioVenta;precioCompra;stock\r\n"
+                + "\"Pan; integral\";IMPORTA-0001;Panadería;1,25;0,80;10\r\n"
+                + "\r\n"
+                + "Leche;IMPORTA-0002;Lácteos;0,99;0,50;20\r\n");
+
+        assertEquals(2, informe.procesadas());
+        assertEquals(2, informe.importadas());
+        Articulo pan = buscar("IMPORTA-0001");
+        assertEquals("Pan; integral", pan.getNombre());
+        assertEquals(1.25, pan.getPrecioVenta());
+        assertEquals(0.80, pan.getPrecioCompra());
+        assertEquals(20, buscar("IMPORTA-0002").getStock());
+    }
+
+    /**
+     * Una línea más larga que el máximo se rechaza como error de esa fila y el resto se importa;
+     * una cabecera demasiado larga rechaza el fichero.
+     */
+    @Test
+    public void debeRechazarLasLineasDemasiadoLargas() throws Exception {
+        String larga = "Largo,IMPORTA-0003,Varios,1,1,1," + "x".repeat(ImportacionArticulosService.LONGITUD_MAXIMA_LINEA);
+        InformeImportacion informe = importar(CABECERA + larga + "\nCorto,IMPORTA-0004,Varios,1,1,1,\n");
+
+        assertEquals(2, informe.procesadas());
+        assertEquals(1, informe.importadas());
+        assertEquals(1, informe.erroneas());
+        assertEquals(2, informe.errores().get(0).linea());
+        assertTrue(articuloRepository.findByCodigoBarras("IMPORTA-0003").isEmpty());
+        buscar("IMPORTA-0004");
+
+        assertThrows(IllegalArgumentException.class,
+                () -> importar("x".repeat(ImportacionArticulosService.LONGITUD_MAXIMA_LINEA + 1) + "\n"));
+    }
+
+    /**
+     * Si la base de datos rechaza el bloque (aquí una descripción que no cabe en su columna),
+     * se reintenta fila a fila: sólo la fila culpable queda como error.
+     */
+    @Test
+    public void debeReintentarFilaAFilaSiFallaElBloque() throws Exception {
+        InformeImportacion informe = importar(CABECERA
+                + "Uno,IMPORTA-0005,Varios,1,1,1,\n"
+                + "Dos,IMPORTA-0006,Varios,1,1,1," + "x".repeat(300) + "\n"
+                + "Tres,IMPORTA-0007,Varios,1,1,1,\n");
+
+        assertEquals(3, informe.procesadas());
+        assertEquals(2, informe.importadas());
+        assertEquals(1, informe.erroneas());
+        assertEquals("IMPORTA-0006", informe.errores().get(0).codigoBarras());
+        assertTrue(informe.errores().get(0).mensaje().contains("demasiado largo"));
+        buscar("IMPORTA-0005");
+        buscar("IMPORTA-0007");
+        assertTrue(articuloRepository.findByCodigoBarras("IMPORTA-0006").isEmpty());
+    }
+}
@@ -0,0 +1,121 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.dto.PaginaArticulos;
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.articulo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class ListadoPaginadoTest {
+
+    @Autowired
+    private ArticuloService articuloService;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    private Long crear(String codigoBarras, String familia, boolean borrado) {
+        Articulo articulo = articulo(codigoBarras, 1);
+        articulo.setFamilia(familia);
+        articulo.setBorrado(borrado);
+        return articuloRepository.save(articulo).getId();
+    }
+
+    /**
+     * Con el filtro de familia las páginas recorren sólo sus artículos activos, por ID creciente
+     * y sin repetir ninguno; la última página no trae cursor.
+     */
+    @Test
+    public void debeRecorrerLaFamiliaPorPaginas() {
+        List<Long> esperados = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            esperados.add(crear("PAGINA-" + i, "Paginación", false));
+            // Artículos intercalados que no deben aparecer: otra familia y uno borrado
+            crear("PAGINA-OTRA-" + i, "Otra familia", false);
+        }
+        crear("PAGINA-BORRADO", "Paginación", true);
+
+        List<Long> recorridos = new ArrayList<>();
+        List<Integer> tamanos = new ArrayList<>();
+        String cursor = null;
+        do {
+            PaginaArticulos pagina = articuloService.listarPagina(cursor, 2, "Paginación");
+            tamanos.add(pagina.articulos().size());
+            pagina.articulos().forEach(a -> recorridos.add(a.getId()));
+            cursor = pagina.siguienteCursor();
+        } while (cursor != null);
+
+        assertEquals(List.of(2, 2, 1), tamanos);
+        assertEquals(esperados, recorridos);
+    }
+
+    /**
+     * Si la última página se llena justo, no se ofrece un cursor que lleve a una página vacía.
+     */
+    @Test
+    public void laUltimaPaginaCompletaNoTraeCursor() {
+        Long primero = crear("PAGINA-EXACTA-1", "Paginación exacta", false);
+        Long segundo = crear("PAGINA-EXACTA-2", "Paginación exacta", false);
+
+        PaginaArticulos primera = articuloService.listarPagina(null, 1, "Paginación exacta");
+        assertEquals(List.of(primero), primera.articulos().stream().map(Articulo::getId).toList());
+        assertNotNull(primera.siguienteCursor());
+
+        PaginaArticulos ultima = articuloService.listarPagina(primera.siguienteCursor(), 1, "Paginación exacta");
+        assertEquals(List.of(segundo), ultima.articulos().stream().map(Articulo::getId).toList());
+        assertNull(ultima.siguienteCursor());
+    }
+
+    /**
+     * Sin familia el recorrido completo devuelve cada artículo activo una sola vez.
+     */
+    @Test
+    public void debeRecorrerTodoElCatalogo() {
+        Long id = crear("PAGINA-TODO", "Pruebas", false);
+
+        List<Long> recorridos = new ArrayList<>();
+        String cursor = null;
+        do {
+            PaginaArticulos pagina = articuloService.listarPagina(cursor, 7, null);
+            pagina.articulos().forEach(a -> recorridos.add(a.getId()));
+            cursor = pagina.siguienteCursor();
+        } while (cursor != null);
+
+        assertTrue(recorridos.contains(id));
+        assertEquals(recorridos.stream().sorted().distinct().toList(), recorridos);
+        assertEquals(articuloRepository.findByBorradoFalse().size(), recorridos.size());
+    }
+
+    /**
+     * Los cursores manipulados y los límites fuera de rango se rechazan con IllegalArgumentException,
+     * que el controlador convierte en 400.
+     */
+    @Test
+    public void debeRechazarCursoresNoValidos() {
+        String sinPrefijo = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("123".getBytes(StandardCharsets.UTF_8));
+        String noNumerico = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("v1:abc".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IllegalArgumentException.class, () -> articuloService.listarPagina("%%%", 10, null));
+        assertThrows(IllegalArgumentException.class, () -> articuloService.listarPagina(sinPrefijo, 10, null));
+        assertThrows(IllegalArgumentException.class, () -> articuloService.listarPagina(noNumerico, 10, null));
+        assertThrows(IllegalArgumentException.class, () -> articuloService.listarPagina(null, 0, null));
+    }
+}
@@ -0,0 +1,156 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.dto.Reserva;
+import es.santander.ascender.proyectoFinal2.inventario.RetencionesStock;
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.model.RolUsuario;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import es.santander.ascender.proyectoFinal2.model.Venta;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import es.santander.ascender.proyectoFinal2.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.articulo;
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.enParalelo;
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.venta;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class ReservaServiceTest {
+
+    private static final int HILOS = 16;
+
+    @Autowired
+    private ReservaService reservaService;
+
+    @Autowired
+    private VentaService ventaService;
+
+    @Autowired
+    private RetencionesStock retencionesStock;
+
+    @Autowired
+    private ArticuloService articuloService;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    /**
+     * Las unidades reservadas no se pueden vender ni reservar por otros, pero sí al confirmar la reserva.
+     */
+    @Test
+    public void debeRetenerElStockHastaConfirmar() {
+        Usuario usuario = usuarioRepository.save(new Usuario("reserva1", "clave", RolUsuario.USER));
+        Usuario otro = usuarioRepository.save(new Usuario("reserva2", "clave", RolUsuario.USER));
+        Articulo articulo = articuloRepository.save(articulo("RESERVA-0001", 5));
+
+        Reserva reserva = reservaService.crear(usuario, Map.of(articulo.getId(), 4), null);
+
+        assertThrows(IllegalStateException.class,
+                () -> reservaService.crear(otro, Map.of(articulo.getId(), 2), null));
+        assertThrows(IllegalArgumentException.class, () -> articuloService.actualizarStock(articulo.getId(), -2));
+        articuloService.actualizarStock(articulo.getId(), -1);
+        assertThrows(IllegalArgumentException.class, () -> reservaService.confirmar(reserva.id(), otro));
+
+        Venta venta = reservaService.confirmar(reserva.id(), usuario);
+
+        assertEquals(40.0, venta.getTotal());
+        assertEquals(0, articuloRepository.findById(articulo.getId()).orElseThrow().getStock());
+        assertEquals(0, retencionesStock.retenido(articulo.getId()));
+    }
+
+    @Test
+    public void debeLiberarLasReservasCaducadas() throws Exception {
+        Usuario usuario = usuarioRepository.save(new Usuario("reserva3", "clave", RolUsuario.USER));
+        Articulo articulo = articuloRepository.save(articulo("RESERVA-0002", 3));
+
+        Reserva reserva = reservaService.crear(usuario, Map.of(articulo.getId(), 3), Duration.ofMillis(200));
+        assertEquals(0, articuloService.stockDisponible(articulo));
+
+        Thread.sleep(1000);
+
+        assertEquals(3, articuloService.stockDisponible(articulo));
+        assertTrue(retencionesStock.buscar(reserva.id()).isEmpty());
+    }
+
+    /**
+     * Reservas que se confirman mientras otros hilos venden el mismo artículo: una reserva concedida
+     * siempre se puede confirmar, y al final el stock cuadra con lo vendido y lo confirmado.
+     */
+    @Test
+    public void unaReservaConcedidaSiempreSePuedeConfirmar() throws Exception {
+        Usuario usuario = usuarioRepository.save(new Usuario("reserva4", "clave", RolUsuario.USER));
+        Articulo articulo = articuloRepository.save(articulo("RESERVA-0003", 200));
+        AtomicInteger vendidas = new AtomicInteger();
+        AtomicInteger confirmadas = new AtomicInteger();
+        Queue<String> fallidas = new ConcurrentLinkedQueue<>();
+
+        enParalelo(HILOS, hilo -> {
+            for (int i = 0; i < 30; i++) {
+                if (hilo % 2 == 0) {
+                    try {
+                        ventaService.realizarVenta(venta(usuario, articulo.getId(), 1));
+                        vendidas.incrementAndGet();
+                    } catch (IllegalStateException e) {
+                        // Sin stock disponible
+                    }
+                    continue;
+                }
+                Reserva reserva;
+                try {
+                    reserva = reservaService.crear(usuario, Map.of(articulo.getId(), 2), null);
+                } catch (IllegalStateException e) {
+                    continue;
+                }
+                try {
+                    reservaService.confirmar(reserva.id(), usuario);
+                    confirmadas.incrementAndGet();
+                } catch (IllegalStateException e) {
+                    fallidas.add(e.getMessage());
+                }
+            }
+        });
+
+        assertTrue(fallidas.isEmpty(), () -> "Confirmaciones fallidas: " + fallidas);
+        assertEquals(0, retencionesStock.retenido(articulo.getId()));
+        assertEquals(200 - vendidas.get() - 2 * confirmadas.get(),
+                articuloRepository.findById(articulo.getId()).orElseThrow().getStock());
+    }
+
+    /**
+     * Si la confirmación falla la reserva sigue reteniendo sus unidades y se puede volver a confirmar.
+     */
+    @Test
+    public void unaConfirmacionFallidaConservaLaReserva() {
+        Usuario usuario = usuarioRepository.save(new Usuario("reserva5", "clave", RolUsuario.USER));
+        Articulo articulo = articuloRepository.save(articulo("RESERVA-0004", 5));
+        Reserva reserva = reservaService.crear(usuario, Map.of(articulo.getId(), 2), null);
+
+        // Cambio directo en la tabla, sin pasar por las reservas: ya no hay stock para confirmarla
+        Articulo guardado = articuloRepository.findById(articulo.getId()).orElseThrow();
+        guardado.setStock(1);
+        articuloRepository.save(guardado);
+        assertThrows(IllegalStateException.class, () -> reservaService.confirmar(reserva.id(), usuario));
+        assertEquals(2, retencionesStock.retenido(articulo.getId()));
+
+        articuloService.actualizarStock(articulo.getId(), 4);
+        reservaService.confirmar(reserva.id(), usuario);
+        assertEquals(0, retencionesStock.retenido(articulo.getId()));
+        assertEquals(3, articuloRepository.findById(articulo.getId()).orElseThrow().getStock());
+    }
+}
@@ -0,0 +1,116 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.model.Articulo;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import es.santander.ascender.proyectoFinal2.service.SnapshotCatalogoService.Instantanea;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.articulo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "catalogo.snapshot.directorio=${java.io.tmpdir}/catalogo-snapshot-${random.uuid}",
+        "catalogo.snapshot.retardo-inicial=PT1H"
+})
+@ActiveProfiles("test")
+public class SnapshotCatalogoServiceTest {
+
+    @Autowired
+    private SnapshotCatalogoService snapshotCatalogoService;
+
+    @Autowired
+    private ArticuloService articuloService;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    /**
+     * La instantánea se puede leer según el formato documentado: cabecera, registros de tamaño fijo
+     * ordenados por hash e id, y la tabla de textos con el código de barras y el nombre de cada uno.
+     */
+    @Test
+    public void debeEscribirElFormatoDocumentado() throws Exception {
+        Articulo articulo = articuloService.crear(articulo("SNAPSHOT-0001", 7));
+        Articulo borrado = articuloService.crear(articulo("SNAPSHOT-0002", 3));
+        articuloService.borradoLogico(borrado.getId());
+        long activos = articuloRepository.findAll().stream().filter(a -> !a.isBorrado()).count();
+
+        Instantanea instantanea = snapshotCatalogoService.generar();
+        ByteBuffer datos = ByteBuffer.wrap(Files.readAllBytes(instantanea.fichero()));
+
+        assertEquals(SnapshotCatalogoService.MAGIA, datos.getInt());
+        assertEquals(SnapshotCatalogoService.VERSION_FORMATO, datos.getInt());
+        assertEquals(instantanea.secuencia(), datos.getLong());
+        assertTrue(datos.getLong() > 0);
+        int registros = datos.getInt();
+        assertEquals(activos, registros);
+        assertEquals(SnapshotCatalogoService.TAMANO_REGISTRO, datos.getInt());
+        long posicionTextos = datos.getLong();
+        assertEquals(SnapshotCatalogoService.TAMANO_CABECERA + (long) registros * SnapshotCatalogoService.TAMANO_REGISTRO,
+                posicionTextos);
+
+        boolean encontrado = false;
+        long hashAnterior = Long.MIN_VALUE;
+        long idAnterior = Long.MIN_VALUE;
+        for (int i = 0; i < registros; i++) {
+            datos.position(SnapshotCatalogoService.TAMANO_CABECERA + i * SnapshotCatalogoService.TAMANO_REGISTRO);
+            long id = datos.getLong();
+            long hash = datos.getLong();
+            int precio = datos.getInt();
+            int stock = datos.getInt();
+            int posicionTexto = datos.getInt();
+            int longitudCodigo = Short.toUnsignedInt(datos.getShort());
+            int longitudNombre = Short.toUnsignedInt(datos.getShort());
+
+            // Orden por hash (con signo, como Long.compare) y después por id
+            assertTrue(hash > hashAnterior || (hash == hashAnterior && id > idAnterior));
+            hashAnterior = hash;
+            idAnterior = id;
+
+            byte[] codigo = new byte[longitudCodigo];
+            byte[] nombre = new byte[longitudNombre];
+            datos.position((int) posicionTextos + posicionTexto);
+            datos.get(codigo).get(nombre);
+            assertEquals(SnapshotCatalogoService.hashCodigoBarras(codigo), hash);
+            assertNotEquals(borrado.getId(), id);
+            if (id == articulo.getId()) {
+                encontrado = true;
+                assertEquals("SNAPSHOT-0001", new String(codigo, StandardCharsets.UTF_8));
+                assertEquals(articulo.getNombre(), new String(nombre, StandardCharsets.UTF_8));
+                assertEquals(1000, precio);
+                assertEquals(7, stock);
+            }
+        }
+        assertTrue(encontrado);
+    }
+
+    /**
+     * Sin cambios no se genera otra instantánea; el ETag lleva la secuencia y el arranque del proceso.
+     */
+    @Test
+    public void noDebeRegenerarSinCambios() throws Exception {
+        articuloService.crear(articulo("SNAPSHOT-0003", 1));
+        Instantanea primera = snapshotCatalogoService.generar();
+        assertSame(primera, snapshotCatalogoService.generar());
+
+        assertTrue(primera.etag().startsWith("\"") && primera.etag().endsWith("-" + primera.secuencia() + "\""));
+        assertNotEquals("\"" + primera.secuencia() + "\"", primera.etag());
+    }
+
+    // Los TPV reimplementan el hash: debe ser FNV-1a de 64 bits estándar
+    @Test
+    public void elHashEsFnv1aDe64Bits() {
+        assertEquals(0xcbf29ce484222325L, SnapshotCatalogoService.hashCodigoBarras(new byte[0]));
+        assertEquals(0xaf63dc4c8601ec8cL, SnapshotCatalogoService.hashCodigoBarras("a".getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,96 @@
+package es.santander.ascender.proyectoFinal2.service;
+
+import es.santander.ascender.proyectoFinal2.dto.TicketVenta;
+import es.santander.ascender.proyectoFinal2.dto.TicketVenta.Estado;
+import es.santander.ascender.proyectoFinal2.model.RolUsuario;
+import es.santander.ascender.proyectoFinal2.model.Usuario;
+import es.santander.ascender.proyectoFinal2.model.Venta;
+import es.santander.ascender.proyectoFinal2.repository.ArticuloRepository;
+import es.santander.ascender.proyectoFinal2.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.articulo;
+import static es.santander.ascender.proyectoFinal2.DatosPrueba.venta;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "ventas.asincronas.hilos=1",
+        "ventas.asincronas.capacidad=2"
+})
+@ActiveProfiles("test")
+public class VentaAsincronaServiceTest {
+
+    @Autowired
+    private VentaAsincronaService ventaAsincronaService;
+
+    @Autowired
+    private ArticuloRepository articuloRepository;
+
+    @Autowired
+    private UsuarioRepository usuarioRepository;
+
+    /**
+     * El ticket se devuelve pendiente y termina con la venta hecha o con el motivo del rechazo.
+     */
+    @Test
+    public void elTicketRecogeElResultadoDeLaVenta() throws Exception {
+        Usuario usuario = usuarioRepository.save(new Usuario("asincrona1", "clave", RolUsuario.USER));
+        Long id = articuloRepository.save(articulo("ASINCRONA-0001", 5)).getId();
+
+        assertThrows(IllegalArgumentException.class, () -> ventaAsincronaService.enviar(venta(usuario, id, 0)));
+
+        TicketVenta ticket = ventaAsincronaService.enviar(venta(usuario, id, 3));
+        assertEquals(Estado.PENDIENTE, ticket.estado());
+        assertNull(ticket.finalizado());
+        TicketVenta completado = ventaAsincronaService.alTerminar(ticket.id(), usuario).get(10, TimeUnit.SECONDS);
+        assertEquals(Estado.COMPLETADA, completado.estado());
+        assertFalse(completado.finalizado().isBefore(completado.creado()));
+        assertEquals(completado, ventaAsincronaService.buscar(ticket.id(), usuario));
+
+        TicketVenta sinStock = ventaAsincronaService.enviar(venta(usuario, id, 3));
+        TicketVenta rechazado = ventaAsincronaService.alTerminar(sinStock.id(), usuario).get(10, TimeUnit.SECONDS);
+        assertEquals(Estado.RECHAZADA, rechazado.estado());
+        assertEquals(2, articuloRepository.findById(id).orElseThrow().getStock());
+
+        Usuario otro = usuarioRepository.save(new Usuario("asincrona2", "clave", RolUsuario.USER));
+        assertThrows(IllegalArgumentException.class, () -> ventaAsincronaService.buscar(ticket.id(), otro));
+    }
+
+    /**
+     * Con la cola llena las ventas se rechazan en el momento en lugar de quedarse esperando.
+     */
+    @Test
+    public void debeRechazarConLaColaLlena() throws Exception {
+        Usuario usuario = usuarioRepository.save(new Usuario("asincrona3", "clave", RolUsuario.USER));
+        Long id = articuloRepository.save(articulo("ASINCRONA-0002", 1000)).getId();
+
+        List<TicketVenta> aceptados = new ArrayList<>();
+        int rechazados = 0;
+        for (int i = 0; i < 50; i++) {
+            try {
+                aceptados.add(ventaAsincronaService.enviar(venta(usuario, id, 1)));
+            } catch (RejectedExecutionException e) {
+                rechazados++;
+            }
+        }
+        for (TicketVenta ticket : aceptados) {
+            assertEquals(Estado.COMPLETADA,
+                    ventaAsincronaService.alTerminar(ticket.id(), usuario).get(10, TimeUnit.SECONDS).estado());
+        }
+
+        assertTrue(rechazados > 0);
+        assertEquals(1000 - aceptados.size(), articuloRepository.findById(id).orElseThrow().getStock());
+    }
+}